@@ -0,0 +1,214 @@
+package com.satish.resumebuilderapi.config;
+
+import com.satish.resumebuilderapi.document.EmailOutbox;
+import com.satish.resumebuilderapi.document.Payment;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.document.ResumeRevision;
+import com.satish.resumebuilderapi.document.StoredImage;
+import com.satish.resumebuilderapi.document.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+@Component("mongoIndexes")
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexBootstrap implements HealthIndicator {
+
+//    findByUserIdAndId needs nothing extra, it is served by the _id index
+    private static final List<IndexSpec> REQUIRED_INDEXES = List.of(
+            new IndexSpec(User.class, "email_unique", keys("email", 1), true, false),
+            new IndexSpec(User.class, "verificationToken", keys("verificationToken", 1), false, true),
+            new IndexSpec(User.class, "profileImage", keys("profileImage", 1), false, true),
+            new IndexSpec(Resume.class, "userId_updatedAt_id", keys("userId", 1, "updatedAt", -1, "_id", -1), false, false),
+            new IndexSpec(Resume.class, "thumbnailLink", keys("thumbnailLink", 1), false, true),
+            new IndexSpec(Resume.class, "profileInfo.profilePreviewUrl", keys("profileInfo.profilePreviewUrl", 1), false, true),
+            new IndexSpec(ResumeRevision.class, "resumeId_version_unique", keys("resumeId", 1, "version", -1), true, false),
+            new IndexSpec(StoredImage.class, "url_unique", keys("url", 1), true, false),
+            new IndexSpec(StoredImage.class, "refCount_lastUsedAt", keys("refCount", 1, "lastUsedAt", 1), false, false),
+            new IndexSpec(Payment.class, "razorpayOrderId_unique", keys("razorpayOrderId", 1), true, false),
+            new IndexSpec(Payment.class, "razorpayPaymentId", keys("razorpayPaymentId", 1), false, true),
+            new IndexSpec(Payment.class, "userId_createdAt", keys("userId", 1, "createdAt", -1), false, false),
+            new IndexSpec(Payment.class, "status", keys("status", 1), false, false),
+            new IndexSpec(EmailOutbox.class, "status_nextAttemptAt", keys("status", 1, "nextAttemptAt", 1), false, false),
+//            sent rows only matter for the delivery latency metric, a week is plenty to look one up
+            new IndexSpec(EmailOutbox.class, "sentAt_ttl", keys("sentAt", 1), false, true, Duration.ofDays(7))
+    );
+
+    private final MongoTemplate mongoTemplate;
+    private final ApplicationContext applicationContext;
+
+    @Value("${app.mongo.indexes.auto-create:true}")
+    private boolean autoCreate;
+
+    private volatile IndexReport lastReport = new IndexReport(List.of(), List.of(), List.of("not verified yet"));
+
+    @EventListener(AvailabilityChangeEvent.class)
+    public void onReadinessChange(AvailabilityChangeEvent<?> event){
+//        Boot marks the app ready on its own, so veto that until every required index is in place
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC){
+            IndexReport report = verify(autoCreate);
+            if (!report.isHealthy()){
+                AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.mongo.indexes.verify-interval:300000}", initialDelayString = "${app.mongo.indexes.verify-interval:300000}")
+    public void reverify(){
+        boolean wasHealthy = lastReport.isHealthy();
+        IndexReport report = verify(autoCreate);
+        if (report.isHealthy() != wasHealthy){
+            AvailabilityChangeEvent.publish(applicationContext,
+                    report.isHealthy() ? ReadinessState.ACCEPTING_TRAFFIC : ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    public IndexReport verify(boolean createMissing){
+        List<String> verified = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        List<String> drift = new ArrayList<>();
+
+        for (IndexSpec spec : REQUIRED_INDEXES){
+            String label = mongoTemplate.getCollectionName(spec.entity) + "." + spec.name;
+            try{
+                IndexOperations indexOps = mongoTemplate.indexOps(spec.entity);
+                Optional<IndexInfo> existing = find(indexOps.getIndexInfo(), spec);
+
+                if (existing.isEmpty() && createMissing){
+                    indexOps.createIndex(spec.toIndex());
+                    log.info("Created index {}", label);
+                    existing = find(indexOps.getIndexInfo(), spec);
+                }
+
+                if (existing.isEmpty()){
+                    missing.add(label);
+                }else if (existing.get().isUnique() != spec.unique || existing.get().isSparse() != spec.sparse
+                        || !Objects.equals(existing.get().getExpireAfter().orElse(null), spec.expireAfter)){
+                    drift.add(label + " (found " + existing.get().getName() + " with unique=" + existing.get().isUnique()
+                            + ", sparse=" + existing.get().isSparse()
+                            + ", expireAfter=" + existing.get().getExpireAfter().orElse(null) + ")");
+                }else {
+                    verified.add(label);
+                }
+            }catch (Exception e){
+                log.error("Could not verify index {}: {}", label, e.getMessage());
+                missing.add(label + " (" + e.getMessage() + ")");
+            }
+        }
+
+        IndexReport report = new IndexReport(verified, drift, missing);
+        if (!report.isHealthy()){
+            log.error("Mongo index check failed, missing: {}, drift: {}", missing, drift);
+        }
+        lastReport = report;
+        return report;
+    }
+
+    @Override
+    public Health health(){
+        IndexReport report = lastReport;
+        Health.Builder builder = report.isHealthy() ? Health.up() : Health.down();
+        return builder
+                .withDetail("verified", report.verified)
+                .withDetail("drift", report.drift)
+                .withDetail("missing", report.missing)
+                .build();
+    }
+
+    private Optional<IndexInfo> find(List<IndexInfo> indexes, IndexSpec spec){
+//        matched on key pattern rather than name, an equivalent index created by hand still counts
+        return indexes.stream()
+                .filter(info -> keysOf(info).equals(spec.keys))
+                .findFirst();
+    }
+
+    private Map<String, Integer> keysOf(IndexInfo info){
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        info.getIndexFields().forEach(field -> keys.put(field.getKey(),
+                field.getDirection() == Sort.Direction.DESC ? -1 : 1));
+        return keys;
+    }
+
+    private static Map<String, Integer> keys(Object... pairs){
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2){
+            keys.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return keys;
+    }
+
+    public static class IndexReport {
+        private final List<String> verified;
+        private final List<String> drift;
+        private final List<String> missing;
+
+        private IndexReport(List<String> verified, List<String> drift, List<String> missing){
+            this.verified = verified;
+            this.drift = drift;
+            this.missing = missing;
+        }
+
+        public boolean isHealthy(){
+            return missing.isEmpty() && drift.isEmpty();
+        }
+    }
+
+    private static class IndexSpec {
+        private final Class<?> entity;
+        private final String name;
+        private final Map<String, Integer> keys;
+        private final boolean unique;
+        private final boolean sparse;
+        private final Duration expireAfter;
+
+        private IndexSpec(Class<?> entity, String name, Map<String, Integer> keys, boolean unique, boolean sparse){
+            this(entity, name, keys, unique, sparse, null);
+        }
+
+        private IndexSpec(Class<?> entity, String name, Map<String, Integer> keys, boolean unique, boolean sparse, Duration expireAfter){
+            this.entity = entity;
+            this.name = name;
+            this.keys = keys;
+            this.unique = unique;
+            this.sparse = sparse;
+            this.expireAfter = expireAfter;
+        }
+
+        private Index toIndex(){
+            Index index = new Index().named(name);
+            keys.forEach((key, direction) -> index.on(key, direction < 0 ? Sort.Direction.DESC : Sort.Direction.ASC));
+            if (unique){
+                index.unique();
+            }
+            if (sparse){
+                index.sparse();
+            }
+            if (expireAfter != null){
+                index.expire(expireAfter);
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.satish.resumebuilderapi.config;
+
+import com.mongodb.client.result.UpdateResult;
+import com.satish.resumebuilderapi.document.Resume;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoMigrations {
+
+    private final MongoTemplate mongoTemplate;
+
+//    a failure stops startup, serving with half-migrated resumes would turn every save of one into a duplicate insert
+    @PostConstruct
+    public void migrate(){
+        try{
+            backfillResumeVersions();
+        }catch (RuntimeException e){
+            throw new IllegalStateException("Mongo migrations failed", e);
+        }
+    }
+
+    private void backfillResumeVersions(){
+//        a null @Version makes Spring Data treat the document as new and insert it again on save
+        UpdateResult result = mongoTemplate.updateMulti(
+                Query.query(Criteria.where("version").exists(false)),
+                new Update().set("version", 0L),
+                Resume.class);
+        if (result.getModifiedCount() > 0){
+            log.info("Initialised version on {} resumes", result.getModifiedCount());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.satish.resumebuilderapi.config;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Configuration
+public class MultipartConfig {
+
+    @Value("${spring.servlet.multipart.max-file-size:10MB}")
+    private DataSize maxFileSize;
+
+    @Value("${spring.servlet.multipart.max-request-size:25MB}")
+    private DataSize maxRequestSize;
+
+    @Value("${spring.servlet.multipart.file-size-threshold:0B}")
+    private DataSize fileSizeThreshold;
+
+    @Value("${spring.servlet.multipart.location:${java.io.tmpdir}}")
+    private String location;
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(){
+//        a zero threshold puts every part on disk while the request is parsed, uploads never sit on the heap
+//        and the container rejects oversized parts mid-stream instead of after buffering them
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setMaxFileSize(maxFileSize);
+        factory.setMaxRequestSize(maxRequestSize);
+        factory.setFileSizeThreshold(fileSizeThreshold);
+        factory.setLocation(location);
+        return factory.createMultipartConfig();
+    }
+}
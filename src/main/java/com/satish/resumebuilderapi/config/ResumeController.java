@@ -1,17 +1,31 @@
 package com.satish.resumebuilderapi.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.satish.resumebuilderapi.document.Resume;
 import com.satish.resumebuilderapi.dto.CreateResumeRequest;
+import com.satish.resumebuilderapi.dto.ResumeRevisionSummary;
+import com.satish.resumebuilderapi.dto.ResumeSearchHit;
+import com.satish.resumebuilderapi.dto.ResumeSummary;
+import com.satish.resumebuilderapi.dto.ResumeSummaryPage;
+import com.satish.resumebuilderapi.exception.PreconditionFailedException;
+import com.satish.resumebuilderapi.service.ExportService;
 import com.satish.resumebuilderapi.service.FileUploadService;
+import com.satish.resumebuilderapi.service.ResumeImportService;
+import com.satish.resumebuilderapi.service.ResumePdfService;
+import com.satish.resumebuilderapi.service.ResumeRevisionService;
 import com.satish.resumebuilderapi.service.ResumeService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.List;
@@ -24,8 +38,15 @@ import static com.satish.resumebuilderapi.util.AppConstants.*;
 @RequiredArgsConstructor
 @Slf4j
 public class ResumeController {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final ResumeService resumeService;
     private final FileUploadService fileUploadService;
+    private final ExportService exportService;
+    private final ResumePdfService resumePdfService;
+    private final ResumeRevisionService resumeRevisionService;
+    private final ResumeImportService resumeImportService;
 
     @PostMapping
     public ResponseEntity<?> createResume(@Valid @RequestBody CreateResumeRequest request, Authentication authentication){
@@ -38,38 +59,202 @@ public class ResumeController {
     }
 
     @GetMapping
-    public ResponseEntity<?> getUserResumes(Authentication authentication){
-//        step 1 call the service method
-       List<Resume> resumes = resumeService.getUserResumes(authentication.getPrincipal());
+    public ResponseEntity<?> getUserResumes(@RequestParam(defaultValue = "false") boolean full,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(defaultValue = "20") int limit,
+                                            Authentication authentication){
+//        step 1 full documents only when explicitly asked for
+        if (full){
+            List<Resume> resumes = resumeService.getUserResumes(authentication.getPrincipal());
+            return ResponseEntity.ok(resumes);
+        }
+
+//        step 2 call the service method for the summary page
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        ResumeSummaryPage page = resumeService.getUserResumeSummaries(authentication.getPrincipal(), cursor, pageSize);
+
+//        step 3 return the response
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping(SEARCH)
+    public ResponseEntity<?> searchResumes(@RequestParam("q") String query,
+                                           @RequestParam(defaultValue = "20") int limit,
+                                           Authentication authentication){
+//        step 1: call the service method
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<ResumeSearchHit> hits = resumeService.searchResumes(authentication.getPrincipal(), query, pageSize);
+
+//        step 2: return the response
+        return ResponseEntity.ok(hits);
+    }
+
+    @PostMapping(value = IMPORT, consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public ResponseEntity<?> importResumes(HttpServletRequest request, Authentication authentication) throws IOException {
+//        step 1: call the service method with the raw body, it is parsed record by record
+        Map<String, Object> response = resumeImportService.importResumes(request.getInputStream(), authentication.getPrincipal());
 
-//        step 2 return the response
-        return ResponseEntity.ok(resumes);
+//        step 2: return the per record results, a body that broke before anything was saved is a bad request
+        if (response.containsKey("error") && ((Number) response.get("imported")).longValue() == 0){
+            return ResponseEntity.badRequest().body(response);
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    @GetMapping(EXPORT)
+    public ResponseEntity<StreamingResponseBody> exportResumes(@RequestParam(defaultValue = "false") boolean gzip,
+                                                               Authentication authentication){
+//        step 1: call the service method
+        StreamingResponseBody body = exportService.exportResumes(authentication.getPrincipal(), gzip);
+
+//        step 2: return the streaming response
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"resumes.ndjson" + (gzip ? ".gz" : "") + "\"");
+        if (gzip){
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @PostMapping(DUPLICATE)
+    public ResponseEntity<?> duplicateResume(@PathVariable String id, Authentication authentication){
+//        step 1: call the service method
+        ResumeSummary copy = resumeService.duplicateResume(id, authentication.getPrincipal());
+
+//        step 2: return the response
+        return ResponseEntity.status(HttpStatus.CREATED).body(copy);
     }
 
     @GetMapping(ID)
     public ResponseEntity<?> getResumeById(@PathVariable String id,
+                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
                                            Authentication authentication){
 //        step 1 : call the service methode
         Resume existingResume = resumeService.getResumeById(id, authentication.getPrincipal());
 
-//        step 2 : return the response
-        return ResponseEntity.ok(existingResume);
+//        step 2 : skip the body when the client already has this version
+        String eTag = eTag(existingResume);
+        if (eTagMatches(ifNoneMatch, eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+//        step 3 : return the response
+        return ResponseEntity.ok().eTag(eTag).body(existingResume);
+    }
+
+    @GetMapping(PDF)
+    public ResponseEntity<?> getResumePdf(@PathVariable String id,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                          Authentication authentication){
+//        step 1: call the service method
+        ResumePdfService.RenderedPdf pdf = resumePdfService.renderResume(id, authentication.getPrincipal());
+
+//        step 2: the content hash doubles as the ETag, unchanged resumes are not sent again
+        String eTag = "\"" + pdf.contentHash() + "\"";
+        if (ifNoneMatch != null && ifNoneMatch.contains(eTag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+//        step 3: return the response
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .eTag(eTag)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + pdf.fileName() + "\"")
+                .body(pdf.bytes());
+    }
+
+    @GetMapping(REVISIONS)
+    public ResponseEntity<?> getRevisions(@PathVariable String id,
+                                          @RequestParam(defaultValue = "50") int limit,
+                                          Authentication authentication){
+//        step 1: call the service method
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<ResumeRevisionSummary> revisions = resumeRevisionService.getRevisions(id, authentication.getPrincipal(), pageSize);
+
+//        step 2: return the response
+        return ResponseEntity.ok(revisions);
+    }
+
+    @GetMapping(REVISION)
+    public ResponseEntity<?> getRevision(@PathVariable String id,
+                                         @PathVariable long version,
+                                         Authentication authentication){
+//        step 1: call the service method
+        Map<String, Object> revision = resumeRevisionService.getRevision(id, version, authentication.getPrincipal());
+
+//        step 2: return the response
+        return ResponseEntity.ok(revision);
     }
 
     @PutMapping(ID)
     public ResponseEntity<?> updateResume(@PathVariable String id ,
                                           @RequestBody Resume updatedData,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
                                           Authentication authentication){
 //        step 1: call the service method
-        Resume updateResume = resumeService.updateResume(id, updatedData, authentication.getPrincipal());
+        Resume updateResume = resumeService.updateResume(id, updatedData, authentication.getPrincipal(), parseVersion(ifMatch));
+
+//        step 2: return the response
+        return ResponseEntity.ok().eTag(eTag(updateResume)).body(updateResume);
+    }
+
+    @PatchMapping(SECTION)
+    public ResponseEntity<?> patchSection(@PathVariable String id,
+                                          @PathVariable String section,
+                                          @RequestBody JsonNode value,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                          Authentication authentication){
+//        step 1: call the service method
+        Map<String, Object> response = resumeService.patchSection(id, section, value, authentication.getPrincipal(), parseVersion(ifMatch));
+
+//        step 2: return the response
+        return ResponseEntity.ok().eTag(eTag((Long) response.get("version"), (String) response.get("thumbnailLink"))).body(response);
+    }
+
+    @PostMapping(SECTION_ITEMS)
+    public ResponseEntity<?> addSectionItem(@PathVariable String id,
+                                            @PathVariable String section,
+                                            @RequestBody JsonNode item,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                            Authentication authentication){
+//        step 1: call the service method
+        Map<String, Object> response = resumeService.addSectionItem(id, section, item, authentication.getPrincipal(), parseVersion(ifMatch));
+
+//        step 2: return the response
+        return ResponseEntity.ok().eTag(eTag((Long) response.get("version"), (String) response.get("thumbnailLink"))).body(response);
+    }
+
+    @PatchMapping(SECTION_ITEM)
+    public ResponseEntity<?> updateSectionItem(@PathVariable String id,
+                                               @PathVariable String section,
+                                               @PathVariable int index,
+                                               @RequestBody JsonNode item,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               Authentication authentication){
+//        step 1: call the service method
+        Map<String, Object> response = resumeService.updateSectionItem(id, section, index, item, authentication.getPrincipal(), parseVersion(ifMatch));
+
+//        step 2: return the response
+        return ResponseEntity.ok().eTag(eTag((Long) response.get("version"), (String) response.get("thumbnailLink"))).body(response);
+    }
+
+    @DeleteMapping(SECTION_ITEM)
+    public ResponseEntity<?> removeSectionItem(@PathVariable String id,
+                                               @PathVariable String section,
+                                               @PathVariable int index,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                               Authentication authentication){
+//        step 1: call the service method
+        Map<String, Object> response = resumeService.removeSectionItem(id, section, index, authentication.getPrincipal(), parseVersion(ifMatch));
 
 //        step 2: return the response
-        return ResponseEntity.ok(updateResume);
+        return ResponseEntity.ok().eTag(eTag((Long) response.get("version"), (String) response.get("thumbnailLink"))).body(response);
     }
 
     @PutMapping(UPLOAD_IMAGE)
     public ResponseEntity<?> uploadResumeImages(@PathVariable String id,
-                                                @RequestPart(value = "thumbnail", required = true) MultipartFile thumbnail,
+                                                @RequestPart(value = "thumbnail", required = false) MultipartFile thumbnail,
                                                 @RequestPart(value = "profileImage", required = false) MultipartFile profileImage,
                                                 Authentication authentication) throws IOException {
 //        step 1: call the service method
@@ -89,4 +274,51 @@ public class ResumeController {
 //        step 2: return response
         return ResponseEntity.ok(Map.of("message", "Resume deleted successfull"));
     }
+
+    private String eTag(Resume resume){
+        return eTag(resume.getVersion(), resume.getThumbnailLink());
+    }
+
+//    the thumbnail is set in the background without a version bump, so its link is part of the tag
+    private String eTag(Long version, String thumbnailLink){
+        long current = version == null ? 0 : version;
+        if (thumbnailLink == null){
+            return "\"" + current + "\"";
+        }
+        return "\"" + current + "-" + Integer.toHexString(thumbnailLink.hashCode()) + "\"";
+    }
+
+    private boolean eTagMatches(String header, String current){
+        if (header == null){
+            return false;
+        }
+        for (String candidate : header.split(",")){
+            String value = candidate.trim();
+            if (value.startsWith("W/")){
+                value = value.substring(2);
+            }
+            if ("*".equals(value) || current.equals(value)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Long parseVersion(String ifMatch){
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())){
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")){
+            value = value.substring(2);
+        }
+        try{
+            value = value.replace("\"", "");
+//            only the version part of the tag is compared, a new thumbnail does not conflict with an edit
+            int separator = value.indexOf('-');
+            return Long.parseLong(separator < 0 ? value : value.substring(0, separator));
+        }catch (NumberFormatException e){
+            throw new PreconditionFailedException("Malformed If-Match header: " + ifMatch);
+        }
+    }
 }
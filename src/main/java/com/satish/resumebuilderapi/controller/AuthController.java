@@ -58,6 +58,23 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping(REFRESH_TOKEN)
+    public ResponseEntity<?> refreshToken(@RequestBody Map<String, String> body){
+//        step 1: get the refresh token from request
+        String refreshToken = body.get("refreshToken");
+
+//        step 2: add the validations
+        if (Objects.isNull(refreshToken)){
+            return ResponseEntity.badRequest().body(Map.of("message", "Refresh token is required"));
+        }
+
+//        step 3: call the service method to issue a new access token
+        AuthResponse response = authService.refreshToken(refreshToken);
+
+//        step 4: return response
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping(RESEND_VERIFICATION)
     public ResponseEntity<?> resendVerification(@RequestBody Map<String , String> body){
 //        step 1: get the email from request
@@ -1,11 +1,21 @@
 package com.satish.resumebuilderapi.controller;
 
+import com.satish.resumebuilderapi.dto.AuthResponse;
+import com.satish.resumebuilderapi.dto.EmailJob;
+import com.satish.resumebuilderapi.service.EmailJobService;
+import com.satish.resumebuilderapi.service.AuthService;
 import com.satish.resumebuilderapi.service.EmailService;
+import com.satish.resumebuilderapi.service.EmailTemplateService;
+import com.satish.resumebuilderapi.service.ResumePdfService;
 import jakarta.mail.MessagingException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -24,30 +34,45 @@ import java.util.Objects;
 public class EmailController {
 
     private final EmailService emailService;
-    
+    private final EmailTemplateService emailTemplateService;
+    private final AuthService authService;
+    private final EmailJobService emailJobService;
+    private final ResumePdfService resumePdfService;
+
     @PostMapping(value = "/send-resume" , consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Map<String, Object>> sendResumeByEmail(
             @RequestPart("recipientEmail") String recipientemail,
             @RequestPart("subject")String subject,
-            @RequestPart("message") String message,
-            @RequestPart("pdfFile") MultipartFile pdfFile) throws IOException, MessagingException {
+            @RequestPart(value = "message", required = false) String message,
+            @RequestPart(value = "pdfFile", required = false) MultipartFile pdfFile,
+            @RequestPart(value = "resumeId", required = false) String resumeId,
+            Authentication authentication) throws IOException, MessagingException {
 
 //        step 1: validate the inputs
         Map<String, Object> response = new HashMap<>();
-        if (Objects.isNull(recipientemail)  || Objects.isNull(pdfFile)){
+        if (Objects.isNull(recipientemail)  || (Objects.isNull(pdfFile) && Objects.isNull(resumeId))){
             response.put("success", false);
             response.put("message", "Missing required fields");
             return ResponseEntity.badRequest().body(response);
         }
 
-//        step 2: get the file data
-        byte[] pdfBytes = pdfFile.getBytes();
-        String originalFilename = pdfFile.getOriginalFilename();
-        String filename = Objects.nonNull(originalFilename) ? originalFilename : "resume.pdf";
+//        step 2: get the file data, rendering it server side when a resume id is given
+        byte[] pdfBytes;
+        String filename;
+        if (Objects.nonNull(resumeId)){
+            ResumePdfService.RenderedPdf pdf = resumePdfService.renderResume(resumeId, authentication.getPrincipal());
+            pdfBytes = pdf.bytes();
+            filename = pdf.fileName();
+        }else {
+            pdfBytes = pdfFile.getBytes();
+            String originalFilename = pdfFile.getOriginalFilename();
+            filename = Objects.nonNull(originalFilename) ? originalFilename : "resume.pdf";
+        }
 
 //        step 3: prepare the email content
         String emailSubject = Objects.nonNull(subject) ? subject : "Resume Application";
-        String emailBody = Objects.nonNull(message) ? message : "Please find my resume attached.\n\n Best regards.";
+        AuthResponse sender = authService.getProfile(authentication.getPrincipal());
+        String emailBody = Objects.nonNull(message) ? message : emailTemplateService.render("send-resume.txt", Map.of("name", Objects.toString(sender.getName(), "")));
 
 //        step 4: cal the service method
         emailService.sendEmailWithAttachment(recipientemail, emailSubject, emailBody, pdfBytes, filename);
@@ -58,4 +83,51 @@ public class EmailController {
         return ResponseEntity.ok(response);
 
     }
+
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> submitSendResumeJob(
+            @RequestPart("recipientEmail") String recipientEmail,
+            @RequestPart(value = "subject", required = false) String subject,
+            @RequestPart(value = "message", required = false) String message,
+            @RequestPart(value = "pdfFile", required = false) MultipartFile pdfFile,
+            @RequestPart(value = "resumeId", required = false) String resumeId,
+            Authentication authentication) throws IOException {
+
+//        step 1: validate the inputs
+        boolean hasUpload = Objects.nonNull(pdfFile) && !pdfFile.isEmpty();
+        if (Objects.isNull(recipientEmail) || (!hasUpload && Objects.isNull(resumeId))){
+            return ResponseEntity.badRequest().body(Map.of("success", false, "message", "Missing required fields"));
+        }
+
+//        step 2: prepare the email content
+        AuthResponse sender = authService.getProfile(authentication.getPrincipal());
+        String emailSubject = Objects.nonNull(subject) ? subject : "Resume Application";
+        String emailBody = Objects.nonNull(message) ? message : emailTemplateService.render("send-resume.txt", Map.of("name", Objects.toString(sender.getName(), "")));
+
+//        step 3: spool the file and queue the job
+        EmailJob job;
+        if (Objects.nonNull(resumeId)){
+            ResumePdfService.RenderedPdf pdf = resumePdfService.renderResume(resumeId, authentication.getPrincipal());
+            job = emailJobService.submitSendResume(sender.getId(), recipientEmail, emailSubject, emailBody, pdf.bytes(), pdf.fileName());
+        }else {
+            String originalFilename = pdfFile.getOriginalFilename();
+            String filename = Objects.nonNull(originalFilename) ? originalFilename : "resume.pdf";
+            job = emailJobService.submitSendResume(sender.getId(), recipientEmail, emailSubject, emailBody, pdfFile, filename);
+        }
+
+//        step 4: return the job reference
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<?> getSendResumeJob(@PathVariable String id, Authentication authentication){
+
+//        step 1: get the current profile
+        AuthResponse sender = authService.getProfile(authentication.getPrincipal());
+
+//        step 2: call the service method and return the job status
+        return emailJobService.getJob(id, sender.getId())
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("message", "Job not found")));
+    }
 }
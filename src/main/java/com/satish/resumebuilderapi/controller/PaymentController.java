@@ -2,18 +2,23 @@ package com.satish.resumebuilderapi.controller;
 
 import com.razorpay.RazorpayException;
 import com.satish.resumebuilderapi.document.Payment;
+import com.satish.resumebuilderapi.service.ExportService;
 import com.satish.resumebuilderapi.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import static com.satish.resumebuilderapi.util.AppConstants.NDJSON;
 import static com.satish.resumebuilderapi.util.AppConstants.PREMIUM;
 
 @RestController
@@ -23,6 +28,7 @@ import static com.satish.resumebuilderapi.util.AppConstants.PREMIUM;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final ExportService exportService;
 
     @PostMapping("/create-order")
     public ResponseEntity<?> createOrder(@RequestBody Map<String, String> request,
@@ -87,6 +93,23 @@ public class PaymentController {
         return ResponseEntity.ok(payments);
     }
 
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportPaymentHistory(@RequestParam(defaultValue = "false") boolean gzip,
+                                                                      Authentication authentication){
+
+//        step 1: call the service
+        StreamingResponseBody body = exportService.exportPayments(authentication.getPrincipal(), gzip);
+
+//        step 2: return the streaming response
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"payments.ndjson" + (gzip ? ".gz" : "") + "\"");
+        if (gzip){
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
     @GetMapping("/order/{orderId}")
     public ResponseEntity<?> getOrderDetails(@PathVariable String orderId){
 
@@ -0,0 +1,46 @@
+package com.satish.resumebuilderapi.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document(collection = "email_outbox")
+public class EmailOutbox {
+
+    public static final String PENDING = "pending";
+    public static final String SENDING = "sending";
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+
+    @Id
+    private String id;
+
+    private String recipient;
+    private String subject;
+    private String htmlContent;
+
+    @Builder.Default
+    private String status = PENDING; //pending, sending, sent, failed
+
+    @Builder.Default
+    private int attempts = 0;
+
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime lockedUntil;
+    private String lastError;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,51 @@
+package com.satish.resumebuilderapi.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document(collection = "resume_revisions")
+public class ResumeRevision {
+
+    public static final String SNAPSHOT = "snapshot";
+    public static final String DIFF = "diff";
+
+    @Id
+    private String id;
+
+    private String resumeId;
+    private String userId;
+
+//    the resume version this revision produces
+    private Long version;
+
+//    the version a diff applies on top of, not always version - 1 when autosaves were coalesced
+    private Long previousVersion;
+
+//    the last version with this same content, saves that changed nothing extend it instead of adding a revision
+    private Long throughVersion;
+
+    private String type; //snapshot, diff
+
+//    number of diffs since the last snapshot, 0 for a snapshot
+    private int distance;
+
+//    full resume content as JSON for snapshots, a JSON Patch array for diffs
+    private String snapshot;
+    private String patch;
+
+    private int sizeBytes;
+
+    @CreatedDate
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,35 @@
+package com.satish.resumebuilderapi.document;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Document(collection = "stored_images")
+public class StoredImage {
+
+//    SHA-256 of the uploaded bytes, the same image always maps to the same document
+    @Id
+    private String id;
+
+    private String url;
+    private String publicId;
+    private long sizeBytes;
+
+//    number of resumes and profiles using the url, the asset is only released once it stays at 0
+    private long refCount;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime lastUsedAt;
+
+//    set by the cleanup job while it destroys the asset, any reuse of the image clears it
+    private String releaseClaim;
+}
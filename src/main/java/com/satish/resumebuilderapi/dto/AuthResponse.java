@@ -20,6 +20,7 @@ public class AuthResponse {
     private String subscriptionPlan;
     private boolean emailVerified;
     private String token;
+    private String refreshToken;
     private LocalDateTime createAt;
     private LocalDateTime updatedAt;
 }
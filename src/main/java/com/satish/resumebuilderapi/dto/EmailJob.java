@@ -0,0 +1,31 @@
+package com.satish.resumebuilderapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+//  immutable, a status change replaces the whole job in the map so readers never see a half-updated one
+@Value
+@Builder(toBuilder = true)
+public class EmailJob {
+
+    public static final String QUEUED = "queued";
+    public static final String SENDING = "sending";
+    public static final String SENT = "sent";
+    public static final String FAILED = "failed";
+
+    private String id;
+
+    @JsonIgnore
+    private String userId;
+
+    private String recipientEmail;
+    private String filename;
+    private long sizeBytes;
+    private String status; //queued, sending, sent, failed
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+}
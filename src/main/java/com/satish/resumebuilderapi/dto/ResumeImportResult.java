@@ -0,0 +1,24 @@
+package com.satish.resumebuilderapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResumeImportResult {
+
+    public static final String CREATED = "created";
+    public static final String FAILED = "failed";
+
+    private int index;
+    private String status;
+    private String id;
+    private String title;
+    private String error;
+}
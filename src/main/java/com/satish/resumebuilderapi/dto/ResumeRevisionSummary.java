@@ -0,0 +1,20 @@
+package com.satish.resumebuilderapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumeRevisionSummary {
+
+    private Long version;
+    private String type;
+    private int sizeBytes;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,20 @@
+package com.satish.resumebuilderapi.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumeSearchHit {
+
+    @JsonProperty("_id")
+    private String id;
+
+    private String title;
+    private double score;
+}
@@ -0,0 +1,18 @@
+package com.satish.resumebuilderapi.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumeSummaryPage {
+
+    private List<ResumeSummary> items;
+    private String nextCursor;
+}
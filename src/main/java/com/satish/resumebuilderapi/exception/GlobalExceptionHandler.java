@@ -1,12 +1,17 @@
 package com.satish.resumebuilderapi.exception;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -41,6 +46,78 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
     }
 
+    @ExceptionHandler(ResourceNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleResourceNotFoundException(ResourceNotFoundException ex){
+        log.info("Inside GlobalExceptionHandler - handleResourceNotFoundException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Resource not found");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    }
+
+    @ExceptionHandler(AuthenticationException.class)
+    public ResponseEntity<Map<String, Object>> handleAuthenticationException(AuthenticationException ex){
+        log.info("Inside GlobalExceptionHandler - handleAuthenticationException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Authentication failed");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleIllegalArgumentException(IllegalArgumentException ex){
+        log.info("Inside GlobalExceptionHandler - handleIllegalArgumentException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Invalid request");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+    }
+
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<Map<String, Object>> handlePreconditionFailedException(PreconditionFailedException ex){
+        log.info("Inside GlobalExceptionHandler - handlePreconditionFailedException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Resource was modified by another request");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(response);
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex, HttpServletRequest request){
+        log.info("Inside GlobalExceptionHandler - handleOptimisticLockingFailureException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Resource was modified by another request");
+        response.put("errors", ex.getMessage());
+
+//        412 only answers a precondition the client sent, a plain lost race is a conflict
+        HttpStatus status = request.getHeader(HttpHeaders.IF_MATCH) == null ? HttpStatus.CONFLICT : HttpStatus.PRECONDITION_FAILED;
+        return ResponseEntity.status(status).body(response);
+    }
+
+    @ExceptionHandler(ServiceBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleServiceBusyException(ServiceBusyException ex){
+        log.info("Inside GlobalExceptionHandler - handleServiceBusyException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Service temporarily unavailable");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(response);
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Map<String, Object>> handleMaxUploadSizeExceededException(MaxUploadSizeExceededException ex){
+        log.info("Inside GlobalExceptionHandler - handleMaxUploadSizeExceededException()");
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Uploaded file is too large");
+        response.put("errors", ex.getMessage());
+
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Map<String, Object>> handleGenericException(Exception ex) {
         log.info("Inside GlobalExceptionHandler - handleGenericException()");
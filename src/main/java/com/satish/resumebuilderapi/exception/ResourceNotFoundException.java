@@ -0,0 +1,8 @@
+package com.satish.resumebuilderapi.exception;
+
+public class ResourceNotFoundException extends RuntimeException{
+    public ResourceNotFoundException(String message){
+        super(message);
+    }
+
+}
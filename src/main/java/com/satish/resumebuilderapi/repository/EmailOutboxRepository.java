@@ -0,0 +1,9 @@
+package com.satish.resumebuilderapi.repository;
+
+import com.satish.resumebuilderapi.document.EmailOutbox;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface EmailOutboxRepository extends MongoRepository<EmailOutbox, String> {
+
+    long countByStatus(String status);
+}
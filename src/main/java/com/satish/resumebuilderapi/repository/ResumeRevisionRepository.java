@@ -0,0 +1,13 @@
+package com.satish.resumebuilderapi.repository;
+
+import com.satish.resumebuilderapi.document.ResumeRevision;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface ResumeRevisionRepository extends MongoRepository<ResumeRevision, String> {
+
+    Optional<ResumeRevision> findFirstByResumeIdOrderByVersionDesc(String resumeId);
+    Optional<ResumeRevision> findFirstByResumeIdAndUserIdAndTypeAndVersionLessThanEqualOrderByVersionDesc(String resumeId, String userId, String type, Long version);
+    void deleteByResumeIdAndUserId(String resumeId, String userId);
+}
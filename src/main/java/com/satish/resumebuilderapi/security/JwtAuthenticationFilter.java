@@ -1,14 +1,14 @@
 package com.satish.resumebuilderapi.security;
 
-import com.satish.resumebuilderapi.document.User;
-import com.satish.resumebuilderapi.repository.UserRepository;
 import com.satish.resumebuilderapi.util.JwtUtil;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -26,33 +26,33 @@ import java.util.ArrayList;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
+
+    @Value("${jwt.claims-principal.enabled:true}")
+    private boolean claimsPrincipalEnabled;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         String authHeader = request.getHeader("Authorization");
-        String token = null;
-        String userId = null;
 
-        if(authHeader != null && authHeader.startsWith("Bearer ")){
-            token = authHeader.substring(7);
+        if (authHeader != null && authHeader.startsWith("Bearer ") && SecurityContextHolder.getContext().getAuthentication() == null){
+            String token = authHeader.substring(7);
 
-            try {
-                userId = jwtUtil.getUserIdFromToken(token);
-            }catch (Exception e){
-                log.error("Token is not valid/available: {}", e.getMessage());
-            }
-        }
-
-        if (userId != null && SecurityContextHolder.getContext().getAuthentication() == null){
             try{
-                if (jwtUtil.validateToken(token) && !jwtUtil.isTokenExpired(token)){
-                    User user = userRepository.findById(userId).orElseThrow(() -> new UsernameNotFoundException("User not found"));
-                    UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(user, null, new ArrayList<>());
-                    authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                    SecurityContextHolder.getContext().setAuthentication(authToken);
-
+                VerifiedToken verifiedToken = jwtUtil.verifyToken(token);
+                if (verifiedToken.isRefreshToken()){
+                    throw new JwtException("Refresh token cannot be used to access resources");
                 }
+
+//                tokens carrying profile claims need no lookup, older tokens fall back to the user document
+                Object principal = claimsPrincipalEnabled && verifiedToken.getPrincipal() != null
+                        ? verifiedToken.getPrincipal()
+                        : userPrincipalCache.get(verifiedToken.getSubject()).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(principal, null, new ArrayList<>());
+                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                SecurityContextHolder.getContext().setAuthentication(authToken);
+            }catch (JwtException | IllegalArgumentException e){
+                log.error("Token is not valid/available: {}", e.getMessage());
             }catch (Exception e){
                 log.error("Exception occurred while validating the token: {}", e.getMessage());
             }
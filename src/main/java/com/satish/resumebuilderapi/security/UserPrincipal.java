@@ -0,0 +1,20 @@
+package com.satish.resumebuilderapi.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@AllArgsConstructor
+@ToString
+public class UserPrincipal {
+
+    private final String id;
+    private final String name;
+    private final String email;
+    private final String profileImage;
+    private final String subscriptionPlan;
+    private final boolean emailVerified;
+}
@@ -0,0 +1,54 @@
+package com.satish.resumebuilderapi.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.satish.resumebuilderapi.document.User;
+import com.satish.resumebuilderapi.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserPrincipalCache {
+
+    private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.ttl:5m}")
+    private Duration ttl;
+
+    private Cache<String, User> principals;
+
+    @PostConstruct
+    public void init(){
+        principals = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, principals, "userPrincipals");
+    }
+
+    public Optional<User> get(String userId){
+        return Optional.ofNullable(principals.get(userId, id -> userRepository.findById(id).orElse(null)));
+    }
+
+    public void invalidate(String userId){
+        if (userId != null){
+            principals.invalidate(userId);
+            log.debug("Principal cache entry invalidated for user {}", userId);
+        }
+    }
+}
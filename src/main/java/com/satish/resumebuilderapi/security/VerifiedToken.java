@@ -0,0 +1,30 @@
+package com.satish.resumebuilderapi.security;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Date;
+
+@Getter
+@AllArgsConstructor
+public class VerifiedToken {
+
+    public static final String ACCESS = "access";
+    public static final String REFRESH = "refresh";
+
+    private final String subject;
+    private final Date issuedAt;
+    private final Date expiration;
+    private final String tokenType;
+
+//    null when the token was issued without profile claims
+    private final UserPrincipal principal;
+
+    public boolean isExpired(){
+        return expiration != null && expiration.before(new Date());
+    }
+
+    public boolean isRefreshToken(){
+        return REFRESH.equals(tokenType);
+    }
+}
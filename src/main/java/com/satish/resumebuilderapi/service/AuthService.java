@@ -6,15 +6,21 @@ import com.satish.resumebuilderapi.dto.LoginRequest;
 import com.satish.resumebuilderapi.dto.RegisterRequest;
 import com.satish.resumebuilderapi.exception.ResourceExistsException;
 import com.satish.resumebuilderapi.repository.UserRepository;
+import com.satish.resumebuilderapi.security.UserPrincipal;
+import com.satish.resumebuilderapi.security.UserPrincipalCache;
+import com.satish.resumebuilderapi.security.VerifiedToken;
 import com.satish.resumebuilderapi.util.JwtUtil;
+import io.jsonwebtoken.JwtException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 @Service
@@ -23,9 +29,11 @@ import java.util.UUID;
 public class AuthService {
 
     private final UserRepository userRepository;
-    private final EmailService emailService;
-    private final PasswordEncoder passwordEncoder;
+    private final EmailOutboxService emailOutboxService;
+    private final EmailTemplateService emailTemplateService;
+    private final PasswordHashingService passwordHashingService;
     private final JwtUtil jwtUtil;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Value("${app.base.url:http://localhost:8080}")
     private String appBaseUrl;
@@ -50,23 +58,13 @@ public class AuthService {
         try{
             String link = appBaseUrl+"/api/auth/verify-email?token="
                     +newUser.getVerificationToken();
-            String html= "<div style = 'font-family:sans-serif'>"+
-                    "<h2>Verify your email</h2>"+
-                    "<p>Hi " + newUser.getName()+ ", please confirm your email to activate your account </p>"+
-                    "<p>" +
-                    "<a href='" + link + "' " +
-                    "style='display:inline-block; padding:10px 16px; background:#6366f1; " +
-                    "color:#fff; border-radius:6px; text-decoration:none;'>" +
-                    "Verify Email" +
-                    "</a>" +
-                    "</p>" +
-            "<p>Or copy this link:" + link + "</p>"+
-                    "<p>This link expires in 24 hours.</p>" +
-                    "</div>";
-            emailService.sendHtmlEmail(newUser.getEmail(), "Verify your email", html);
+            String html = emailTemplateService.render("verify-email.html", Map.of(
+                    "name", Objects.toString(newUser.getName(), ""),
+                    "link", link));
+            emailOutboxService.enqueue(newUser.getEmail(), "Verify your email", html);
         }catch (Exception e){
             log.error("Exception occured at sendVerificationEmail(): {}", e.getMessage());
-            throw new RuntimeException("Failed to send verification email:" +e.getMessage());
+            throw new RuntimeException("Failed to queue verification email:" +e.getMessage());
         }
     }
 
@@ -89,7 +87,7 @@ public class AuthService {
         return User.builder()
                 .name(request.getName())
                 .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
+                .password(passwordHashingService.encode(request.getPassword()))
                 .profileImage(request.getProfileImageUrl())
                 .subscriptionPlan("Basic")
                 .emailVerified(false)
@@ -112,22 +110,54 @@ public class AuthService {
         user.setVerificationExpires(null);
 
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getId());
     }
 
     public AuthResponse login(LoginRequest request){
         User existingUser = userRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new UsernameNotFoundException("Invalid email or password"));
 
-        if (!passwordEncoder.matches(request.getPassword(), existingUser.getPassword())){
+        if (!passwordHashingService.matches(request.getPassword(), existingUser.getPassword())){
             throw new UsernameNotFoundException("Invalid email or password");
         }
         if (!existingUser.isEmailVerified()){
             throw new RuntimeException("Please verify your email before logging in.");
         }
-        String token = jwtUtil.generateToken(existingUser.getId());
+        if (passwordHashingService.needsRehash(existingUser.getPassword())){
+            existingUser.setPassword(passwordHashingService.encode(request.getPassword()));
+            userRepository.save(existingUser);
+            userPrincipalCache.invalidate(existingUser.getId());
+            log.info("Password hash of user {} rehashed with the configured cost factor", existingUser.getId());
+        }
+        String token = jwtUtil.generateToken(existingUser);
 
         AuthResponse response = toResponse(existingUser);
         response.setToken(token);
+        response.setRefreshToken(jwtUtil.generateRefreshToken(existingUser.getId()));
+        return response;
+    }
+
+    public AuthResponse refreshToken(String refreshToken){
+        VerifiedToken verifiedToken;
+        try{
+            verifiedToken = jwtUtil.verifyToken(refreshToken);
+        }catch (JwtException | IllegalArgumentException e){
+            throw new BadCredentialsException("Invalid or expired refresh token");
+        }
+        if (!verifiedToken.isRefreshToken()){
+            throw new BadCredentialsException("Invalid or expired refresh token");
+        }
+
+//        always read the document so plan and verification changes land in the new access token
+        User existingUser = userRepository.findById(verifiedToken.getSubject())
+                .orElseThrow(() -> new BadCredentialsException("Invalid or expired refresh token"));
+        if (!existingUser.isEmailVerified()){
+            throw new RuntimeException("Please verify your email before logging in.");
+        }
+
+        AuthResponse response = toResponse(existingUser);
+        response.setToken(jwtUtil.generateToken(existingUser));
+        response.setRefreshToken(refreshToken);
         return response;
     }
 
@@ -147,12 +177,23 @@ public class AuthService {
 
 //        step 4: update the user
         userRepository.save(user);
+        userPrincipalCache.invalidate(user.getId());
 
 //        step 5: resend the verification email
         sendVerificationEmail(user);
     }
 
     public AuthResponse getProfile(Object principalObject) {
+        if (principalObject instanceof UserPrincipal principal){
+            return AuthResponse.builder()
+                    .id(principal.getId())
+                    .name(principal.getName())
+                    .email(principal.getEmail())
+                    .profileImageUrl(principal.getProfileImage())
+                    .emailVerified(principal.isEmailVerified())
+                    .subscriptionPlan(principal.getSubscriptionPlan())
+                    .build();
+        }
         User existingUser = (User) principalObject;
         return toResponse(existingUser);
     }
@@ -0,0 +1,370 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.bulk.BulkWriteResult;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AutosaveBuffer {
+
+    private static final int DRAIN_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final ResumeCache resumeCache;
+    private final ResumeRevisionService resumeRevisionService;
+    private final ThumbnailService thumbnailService;
+    private final ImageStoreService imageStoreService;
+    private final ResumeSearchIndex resumeSearchIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.autosave.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.autosave.quiet-period:3s}")
+    private Duration quietPeriod;
+
+    @Value("${app.autosave.max-delay:15s}")
+    private Duration maxDelay;
+
+    @Value("${app.autosave.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.autosave.drain-retry-delay:1s}")
+    private Duration drainRetryDelay;
+
+    private final Map<Key, Entry> buffer = new ConcurrentHashMap<>();
+//    only keeps the scheduled flush and the shutdown drain apart, single resume flushes use the entry's own lock
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init(){
+        meterRegistry.gaugeMapSize("resume.autosave.buffered", List.of(), buffer);
+        if (enabled){
+            log.info("Write-behind autosave enabled, quiet period {}, max delay {}", quietPeriod, maxDelay);
+        }
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    public Optional<Resume> get(String userId, String resumeId){
+        Entry entry = buffer.get(new Key(userId, resumeId));
+        return entry == null ? Optional.empty() : Optional.of(entry.resume);
+    }
+
+    public Resume update(String userId, String resumeId, Supplier<Resume> loader, UnaryOperator<Resume> change){
+        Key key = new Key(userId, resumeId);
+        Resume loaded = null;
+        while (true){
+            long now = System.nanoTime();
+            Resume persisted = loaded;
+//            check and write under the map's per-key lock, two racing saves of one resume cannot both pass the version check
+            Entry entry = buffer.compute(key, (ignored, existing) -> {
+                if (existing != null){
+                    Resume next = change.apply(existing.resume);
+                    return new Entry(next, existing.persistedVersion, existing.persistedContent, existing.persistedThumbnail,
+                            existing.firstBufferedAt, now, existing.lock);
+                }
+                if (persisted == null){
+//                    nothing buffered, the load happens outside so the bin lock never waits on Mongo
+                    return null;
+                }
+                Resume next = change.apply(persisted);
+                return new Entry(next, persisted.getVersion(), resumeRevisionService.contentOf(persisted), persisted.getThumbnailLink(),
+                        now, now, new ReentrantLock());
+            });
+            if (entry != null){
+                meterRegistry.counter("resume.autosave.buffered.writes").increment();
+                return entry.resume;
+            }
+//            a stale load is caught by the flush, its write is guarded by the version it was based on
+            loaded = loader.get();
+            if (loaded == null){
+                throw new RuntimeException("Resume not found");
+            }
+        }
+    }
+
+    public void discard(String userId, String resumeId){
+        buffer.remove(new Key(userId, resumeId));
+    }
+
+    public void flush(String userId, String resumeId){
+        Key key = new Key(userId, resumeId);
+        Entry entry;
+        while ((entry = buffer.get(key)) != null){
+//            waits only for a flush of this same resume, never for a sweep over other users
+            entry.lock.lock();
+            try{
+                Entry current = buffer.get(key);
+                if (current == null || current.lock != entry.lock){
+//                    flushed and re-buffered meanwhile, go again with the new entry's lock
+                    continue;
+                }
+                if (!write(List.of(Map.entry(key, current)))){
+                    throw new ServiceBusyException("Could not save pending changes, please try again shortly");
+                }
+                return;
+            }finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+//    for the reads that go to Mongo directly, lists and exports, so a user sees their own buffered edits there too
+    public void flushUser(String userId){
+        if (buffer.isEmpty()){
+            return;
+        }
+        for (Key key : List.copyOf(buffer.keySet())){
+            if (key.userId.equals(userId)){
+                flush(key.userId, key.resumeId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.autosave.flush-interval:500}")
+    public void flushDue(){
+        if (buffer.isEmpty()){
+            return;
+        }
+        long now = System.nanoTime();
+        sweepLock.lock();
+        try{
+//            flush once the user pauses typing, or after max-delay for a user who never pauses
+            List<Map.Entry<Key, Entry>> due = new ArrayList<>();
+            for (Map.Entry<Key, Entry> candidate : buffer.entrySet()){
+                Entry entry = candidate.getValue();
+                if (now - entry.lastWriteAt < quietPeriod.toNanos() && now - entry.firstBufferedAt < maxDelay.toNanos()){
+                    continue;
+                }
+//                a resume a request thread is flushing right now is left to it
+                Map.Entry<Key, Entry> locked = lock(candidate.getKey(), entry, false);
+                if (locked != null){
+                    due.add(locked);
+                }
+                if (due.size() >= batchSize){
+                    writeAndUnlock(due);
+                    due = new ArrayList<>();
+                }
+            }
+            writeAndUnlock(due);
+        }finally {
+            sweepLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drain(){
+        sweepLock.lock();
+        try{
+            List<Map.Entry<Key, Entry>> all = new ArrayList<>();
+            buffer.forEach((key, entry) -> {
+                Map.Entry<Key, Entry> locked = lock(key, entry, true);
+                if (locked != null){
+                    all.add(locked);
+                }
+            });
+            int lost = 0;
+            for (int i = 0; i < all.size(); i += batchSize){
+                List<Map.Entry<Key, Entry>> batch = all.subList(i, Math.min(all.size(), i + batchSize));
+                if (!writeWithRetry(batch)){
+                    lost += batch.size();
+                    batch.forEach(item -> log.error("Buffered autosave of resume {} version {} could not be written on shutdown",
+                            item.getKey().resumeId, item.getValue().resume.getVersion()));
+                }
+            }
+            all.forEach(item -> item.getValue().lock.unlock());
+            if (lost > 0){
+                meterRegistry.counter("resume.autosave.lost").increment(lost);
+                log.error("Lost {} of {} buffered autosaves on shutdown", lost, all.size());
+            }else if (!all.isEmpty()){
+                log.info("Drained {} buffered autosaves on shutdown", all.size());
+            }
+        }finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private Map.Entry<Key, Entry> lock(Key key, Entry entry, boolean wait){
+        if (wait){
+            entry.lock.lock();
+        }else if (!entry.lock.tryLock()){
+            return null;
+        }
+//        take the latest state under the lock, an edit may have replaced the entry since it was read
+        Entry current = buffer.get(key);
+        if (current == null || current.lock != entry.lock){
+            entry.lock.unlock();
+            return null;
+        }
+        return Map.entry(key, current);
+    }
+
+    private void writeAndUnlock(List<Map.Entry<Key, Entry>> batch){
+        try{
+            write(batch);
+        }finally {
+            batch.forEach(item -> item.getValue().lock.unlock());
+        }
+    }
+
+    private boolean writeWithRetry(List<Map.Entry<Key, Entry>> batch){
+        for (int attempt = 1; attempt <= DRAIN_ATTEMPTS; attempt++){
+            if (write(batch)){
+                return true;
+            }
+            if (attempt < DRAIN_ATTEMPTS){
+                try{
+                    Thread.sleep(drainRetryDelay.toMillis());
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean write(List<Map.Entry<Key, Entry>> batch){
+        if (batch.isEmpty()){
+            return true;
+        }
+
+//        step 1: one bulk request, each update guarded by the version that is actually in Mongo
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Resume.class);
+        for (Map.Entry<Key, Entry> item : batch){
+            Key key = item.getKey();
+            Entry entry = item.getValue();
+            Query query = Query.query(Criteria.where("id").is(key.resumeId)
+                    .and("userId").is(key.userId)
+                    .and("version").is(entry.persistedVersion));
+            bulk.updateOne(query, contentUpdate(entry));
+        }
+        BulkWriteResult result;
+        try{
+            result = bulk.execute();
+        }catch (RuntimeException e){
+            log.error("Autosave flush of {} resumes failed, will retry: {}", batch.size(), e.getMessage());
+            return false;
+        }
+        meterRegistry.counter("resume.autosave.flushed").increment(batch.size());
+
+//        step 2: the bulk result only has totals, so when some update missed, read back what Mongo holds now
+        boolean verify = result.getMatchedCount() != batch.size();
+        Map<String, Resume> stored = verify ? readBack(batch) : Map.of();
+
+        for (Map.Entry<Key, Entry> item : batch){
+            Key key = item.getKey();
+            Entry flushed = item.getValue();
+
+//            step 3: our write landed only if Mongo has our version with our content, a write from elsewhere is kept
+            if (verify && !landed(flushed, stored.get(key.resumeId))){
+                log.warn("Buffered autosave of resume {} conflicted with another write and was dropped", key.resumeId);
+                meterRegistry.counter("resume.autosave.conflicts").increment();
+                buffer.remove(key, flushed);
+                resumeCache.evict(key.userId, key.resumeId);
+                Resume current = stored.get(key.resumeId);
+                if (current == null){
+                    resumeSearchIndex.remove(key.userId, key.resumeId);
+                }else {
+                    resumeSearchIndex.index(current);
+                }
+                continue;
+            }
+
+//            step 4: remove the entry unless a newer save arrived meanwhile, that one now builds on what was flushed
+            ObjectNode flushedContent = resumeRevisionService.contentOf(flushed.resume);
+            buffer.computeIfPresent(key, (k, current) -> current == flushed ? null
+                    : new Entry(current.resume, flushed.resume.getVersion(), flushedContent, flushed.resume.getThumbnailLink(),
+                            System.nanoTime(), current.lastWriteAt, current.lock));
+
+            resumeRevisionService.recordChange(flushed.persistedContent, flushed.resume, flushed.persistedVersion);
+            thumbnailService.schedule(key.userId, key.resumeId);
+            imageStoreService.replace(flushed.persistedContent.path("profileInfo").path("profilePreviewUrl").textValue(),
+                    flushed.resume.getProfileInfo() == null ? null : flushed.resume.getProfileInfo().getProfilePreviewUrl());
+            if (clientThumbnail(flushed)){
+                imageStoreService.replace(flushed.persistedThumbnail, flushed.resume.getThumbnailLink());
+            }
+        }
+        return true;
+    }
+
+    private Map<String, Resume> readBack(List<Map.Entry<Key, Entry>> batch){
+        List<String> ids = batch.stream().map(item -> item.getKey().resumeId).toList();
+        Map<String, Resume> stored = new HashMap<>();
+        mongoTemplate.find(Query.query(Criteria.where("id").in(ids)), Resume.class)
+                .forEach(resume -> stored.put(resume.getId(), resume));
+        return stored;
+    }
+
+    private boolean landed(Entry flushed, Resume stored){
+        return stored != null
+                && Objects.equals(stored.getVersion(), flushed.resume.getVersion())
+                && resumeRevisionService.contentOf(stored).equals(resumeRevisionService.contentOf(flushed.resume));
+    }
+
+//    the thumbnail pipeline sets thumbnailLink directly, so it is only written when the client changed it in this entry
+    private boolean clientThumbnail(Entry entry){
+        return entry.resume.getThumbnailLink() != null && !entry.resume.getThumbnailLink().equals(entry.persistedThumbnail);
+    }
+
+    private Update contentUpdate(Entry entry){
+        Resume resume = entry.resume;
+        Update update = new Update()
+                .set("title", resume.getTitle())
+                .set("template", resume.getTemplate())
+                .set("profileInfo", resume.getProfileInfo())
+                .set("contactInfo", resume.getContactInfo())
+                .set("workExperiences", resume.getWorkExperiences())
+                .set("educations", resume.getEducations())
+                .set("skills", resume.getSkills())
+                .set("projects", resume.getProjects())
+                .set("certifications", resume.getCertifications())
+                .set("languages", resume.getLanguages())
+                .set("interests", resume.getInterests())
+                .set("version", resume.getVersion())
+                .set("updatedAt", resume.getUpdatedAt());
+        if (clientThumbnail(entry)){
+            update.set("thumbnailLink", resume.getThumbnailLink());
+        }
+        return update;
+    }
+
+    private record Key(String userId, String resumeId){
+    }
+
+//    the lock is carried from entry to entry for as long as the resume stays buffered
+    private record Entry(Resume resume, Long persistedVersion, ObjectNode persistedContent, String persistedThumbnail,
+                         long firstBufferedAt, long lastWriteAt, ReentrantLock lock){
+    }
+}
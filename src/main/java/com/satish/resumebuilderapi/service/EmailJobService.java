@@ -0,0 +1,172 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.dto.EmailJob;
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailJobService {
+
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.email.jobs.workers:2}")
+    private int workers;
+
+    @Value("${app.email.jobs.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.email.jobs.retention:1h}")
+    private Duration retention;
+
+    @Value("${app.email.jobs.spool-dir:${java.io.tmpdir}}")
+    private String spoolDir;
+
+    private final Map<String, EmailJob> jobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init(){
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "email-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "emailJobs");
+    }
+
+    public EmailJob submitSendResume(String userId, String recipientEmail, String subject, String body, MultipartFile pdfFile, String filename) throws IOException {
+//        step 1: spool the upload to disk so the request thread and heap are released right away
+        Path spooled = Files.createTempFile(Path.of(spoolDir), "resume-", ".pdf");
+        try{
+            pdfFile.transferTo(spooled);
+        }catch (IOException | RuntimeException e){
+            deleteQuietly(spooled);
+            throw e;
+        }
+        return submit(userId, recipientEmail, subject, body, spooled, filename);
+    }
+
+    public EmailJob submitSendResume(String userId, String recipientEmail, String subject, String body, byte[] pdfBytes, String filename) throws IOException {
+        Path spooled = Files.createTempFile(Path.of(spoolDir), "resume-", ".pdf");
+        try{
+            Files.write(spooled, pdfBytes);
+        }catch (IOException | RuntimeException e){
+            deleteQuietly(spooled);
+            throw e;
+        }
+        return submit(userId, recipientEmail, subject, body, spooled, filename);
+    }
+
+    public EmailJob submit(String userId, String recipientEmail, String subject, String body, Path spooled, String filename) throws IOException {
+        EmailJob job;
+        try{
+            job = EmailJob.builder()
+                    .id(UUID.randomUUID().toString())
+                    .userId(userId)
+                    .recipientEmail(recipientEmail)
+                    .filename(filename)
+                    .sizeBytes(Files.size(spooled))
+                    .status(EmailJob.QUEUED)
+                    .createdAt(LocalDateTime.now())
+                    .build();
+        }catch (IOException e){
+            deleteQuietly(spooled);
+            throw e;
+        }
+        jobs.put(job.getId(), job);
+
+//        step 2: hand the job to the bounded worker pool
+        try{
+            executor.execute(() -> send(job, subject, body, spooled));
+        }catch (RejectedExecutionException e){
+            jobs.remove(job.getId());
+            deleteQuietly(spooled);
+            throw new ServiceBusyException("Too many emails queued, please try again shortly");
+        }
+        return job;
+    }
+
+    public Optional<EmailJob> getJob(String jobId, String userId){
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> job.getUserId().equals(userId));
+    }
+
+    private void send(EmailJob job, String subject, String body, Path spooled){
+        update(job.getId(), current -> current.toBuilder().status(EmailJob.SENDING).build());
+        try{
+            emailService.sendEmailWithAttachment(job.getRecipientEmail(), subject, body, spooled.toFile(), job.getFilename());
+            complete(job.getId(), EmailJob.SENT, null);
+        }catch (Exception e){
+            log.error("Send-resume job {} failed: {}", job.getId(), e.getMessage());
+            complete(job.getId(), EmailJob.FAILED, e.getMessage());
+        }finally {
+            deleteQuietly(spooled);
+        }
+    }
+
+    private void complete(String jobId, String status, String error){
+        update(jobId, current -> current.toBuilder()
+                .status(status)
+                .error(error)
+                .completedAt(LocalDateTime.now())
+                .build());
+        meterRegistry.counter("email.jobs.completed", "status", status).increment();
+    }
+
+    private void update(String jobId, UnaryOperator<EmailJob> change){
+//        each change swaps in a new immutable job, the map gives readers on request threads a happens-before edge
+        jobs.computeIfPresent(jobId, (id, current) -> change.apply(current));
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.jobs.prune-interval:300000}")
+    public void pruneCompleted(){
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> job.getCompletedAt() != null && job.getCompletedAt().isBefore(cutoff));
+    }
+
+    private void deleteQuietly(Path path){
+        try{
+            Files.deleteIfExists(path);
+        }catch (IOException e){
+            log.warn("Could not delete spooled attachment {}: {}", path, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
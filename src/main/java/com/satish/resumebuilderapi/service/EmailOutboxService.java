@@ -0,0 +1,270 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.document.EmailOutbox;
+import com.satish.resumebuilderapi.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxService {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final MongoTemplate mongoTemplate;
+    private final EmailService emailService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.email.outbox.workers:2}")
+    private int workers;
+
+    @Value("${app.email.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.email.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${app.email.outbox.lease:2m}")
+    private Duration lease;
+
+    @Value("${app.email.outbox.initial-backoff:30s}")
+    private Duration initialBackoff;
+
+    @Value("${app.email.outbox.max-backoff:30m}")
+    private Duration maxBackoff;
+
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private ExecutorService workerPool;
+
+    @PostConstruct
+    public void init(){
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-outbox-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        meterRegistry.gauge("email.outbox.pending", pendingCount);
+    }
+
+    public EmailOutbox enqueue(String recipient, String subject, String htmlContent){
+        EmailOutbox email = EmailOutbox.builder()
+                .recipient(recipient)
+                .subject(subject)
+                .htmlContent(htmlContent)
+                .status(EmailOutbox.PENDING)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+        return emailOutboxRepository.save(email);
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.outbox.poll-interval:2000}")
+    public void poll(){
+        pendingCount.set(emailOutboxRepository.countByStatus(EmailOutbox.PENDING));
+        failExhausted();
+
+//        top up to the configured number of workers, each one drains batches until nothing is due
+        while (activeWorkers.get() < workers){
+            activeWorkers.incrementAndGet();
+            workerPool.execute(this::drain);
+        }
+    }
+
+    private void drain(){
+        try{
+            List<EmailOutbox> batch;
+            while (!(batch = claimBatch()).isEmpty()){
+                deliver(batch);
+            }
+        }catch (Exception e){
+            log.error("Email outbox worker failed: {}", e.getMessage());
+        }finally {
+            activeWorkers.decrementAndGet();
+        }
+    }
+
+    private List<EmailOutbox> claimBatch(){
+        List<EmailOutbox> batch = new ArrayList<>();
+        while (batch.size() < batchSize){
+            LocalDateTime now = LocalDateTime.now();
+
+//            rows stuck in sending past their lease belong to a worker that died, so they are claimable again
+            Query query = new Query(new Criteria().andOperator(
+                    new Criteria().orOperator(
+                            Criteria.where("status").is(EmailOutbox.PENDING).and("nextAttemptAt").lte(now),
+                            Criteria.where("status").is(EmailOutbox.SENDING).and("lockedUntil").lt(now)),
+                    Criteria.where("attempts").lt(maxAttempts)))
+                    .with(Sort.by("nextAttemptAt"));
+            Update update = new Update()
+                    .set("status", EmailOutbox.SENDING)
+                    .set("lockedUntil", now.plus(lease))
+                    .inc("attempts", 1);
+
+            EmailOutbox claimed = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), EmailOutbox.class);
+            if (claimed == null){
+                break;
+            }
+            batch.add(claimed);
+        }
+        return batch;
+    }
+
+//    a worker that died on the last attempt, or a lowered max-attempts, leaves rows the claim no longer takes
+    private void failExhausted(){
+        LocalDateTime now = LocalDateTime.now();
+        Query exhausted = Query.query(new Criteria().andOperator(
+                new Criteria().orOperator(
+                        Criteria.where("status").is(EmailOutbox.PENDING),
+                        Criteria.where("status").is(EmailOutbox.SENDING).and("lockedUntil").lt(now)),
+                Criteria.where("attempts").gte(maxAttempts)));
+        long failed = mongoTemplate.updateMulti(exhausted,
+                new Update()
+                        .set("status", EmailOutbox.FAILED)
+                        .set("lastError", "Gave up after " + maxAttempts + " attempts")
+                        .unset("lockedUntil"),
+                EmailOutbox.class).getModifiedCount();
+        if (failed > 0){
+            meterRegistry.counter("email.outbox.delivered", "result", "failed").increment(failed);
+            log.error("Gave up on {} outbox emails that used up their attempts", failed);
+        }
+    }
+
+    private void deliver(List<EmailOutbox> batch){
+//        step 1: build every message first, one that cannot be built fails on its own
+        List<EmailOutbox> emails = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (EmailOutbox email : batch){
+            try{
+                messages.add(emailService.createHtmlMessage(email.getRecipient(), email.getSubject(), email.getHtmlContent()));
+                emails.add(email);
+            }catch (Exception e){
+                markFailed(email, e);
+            }
+        }
+        if (emails.isEmpty()){
+            return;
+        }
+
+//        step 2: the whole batch goes over one pooled SMTP session, the lease is extended right before each message
+        boolean[] leaseLost = new boolean[emails.size()];
+        List<MessagingException> results;
+        try{
+            results = emailService.sendBatch(messages, index -> {
+                if (renewLease(emails.get(index))){
+                    return true;
+                }
+                leaseLost[index] = true;
+                return false;
+            });
+        }catch (Exception e){
+//            no session could be had, nothing was sent
+            for (int i = 0; i < emails.size(); i++){
+                if (!leaseLost[i]){
+                    markFailed(emails.get(i), e);
+                }
+            }
+            return;
+        }
+
+//        step 3: record each outcome under this worker's claim
+        for (int i = 0; i < emails.size(); i++){
+            EmailOutbox email = emails.get(i);
+            if (leaseLost[i]){
+                log.warn("Lease on email {} expired and was taken over, skipping it", email.getId());
+                meterRegistry.counter("email.outbox.lease.lost").increment();
+            }else if (results.get(i) == null){
+                markSent(email);
+            }else {
+                markFailed(email, results.get(i));
+            }
+        }
+    }
+
+    private boolean renewLease(EmailOutbox email){
+        try{
+            return mongoTemplate.updateFirst(claimedBy(email),
+                    new Update().set("lockedUntil", LocalDateTime.now().plus(lease)),
+                    EmailOutbox.class).getMatchedCount() > 0;
+        }catch (RuntimeException e){
+//            runs mid-batch, an error here must not abort a send that already delivered earlier messages
+            log.warn("Could not renew lease on email {}: {}", email.getId(), e.getMessage());
+            return false;
+        }
+    }
+
+//    attempts goes up on every claim, so it tells this worker's claim apart from a later one
+    private Query claimedBy(EmailOutbox email){
+        return Query.query(Criteria.where("id").is(email.getId())
+                .and("status").is(EmailOutbox.SENDING)
+                .and("attempts").is(email.getAttempts()));
+    }
+
+    private void markSent(EmailOutbox email){
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.updateFirst(claimedBy(email),
+                new Update()
+                        .set("status", EmailOutbox.SENT)
+                        .set("sentAt", now)
+                        .unset("lockedUntil")
+                        .unset("lastError"),
+                EmailOutbox.class);
+
+        meterRegistry.counter("email.outbox.delivered", "result", "sent").increment();
+        if (email.getCreatedAt() != null){
+            meterRegistry.timer("email.outbox.delivery.latency")
+                    .record(Duration.between(email.getCreatedAt(), now));
+        }
+    }
+
+    private void markFailed(EmailOutbox email, Exception e){
+        boolean exhausted = email.getAttempts() >= maxAttempts;
+        Update update = new Update()
+                .set("status", exhausted ? EmailOutbox.FAILED : EmailOutbox.PENDING)
+                .set("lastError", e.getMessage())
+                .unset("lockedUntil");
+        if (!exhausted){
+            update.set("nextAttemptAt", LocalDateTime.now().plus(backoff(email.getAttempts())));
+        }
+        mongoTemplate.updateFirst(claimedBy(email), update, EmailOutbox.class);
+
+        meterRegistry.counter("email.outbox.delivered", "result", exhausted ? "failed" : "retry").increment();
+        log.error("Failed to deliver email {} to {} (attempt {}): {}", email.getId(), email.getRecipient(), email.getAttempts(), e.getMessage());
+    }
+
+    private Duration backoff(int attempts){
+        long multiplier = 1L << Math.min(Math.max(attempts - 1, 0), 20);
+        Duration delay = initialBackoff.multipliedBy(multiplier);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workerPool.shutdown();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
@@ -6,10 +6,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -20,17 +28,21 @@ public class EmailService {
     public String fromEmail;
 
     private final JavaMailSender mailSender;
+    private final SmtpTransportPool smtpTransportPool;
 
     public void sendHtmlEmail(String to, String subject, String htmlContent) throws MessagingException {
         log.info("Inside EmailService - sendHtmlEmail(): {}, {}, {}", to, subject, htmlContent);
+        send(createHtmlMessage(to, subject, htmlContent));
+    }
 
+    public MimeMessage createHtmlMessage(String to, String subject, String htmlContent) throws MessagingException {
         MimeMessage message = mailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
         helper.setFrom(fromEmail);
         helper.setTo(to);
         helper.setSubject(subject);
         helper.setText(htmlContent, true);
-        mailSender.send(message);
+        return message;
     }
 
     public void sendEmailWithAttachment(String to, String subject, String body, byte[] attachment, String filename) throws MessagingException {
@@ -41,6 +53,70 @@ public class EmailService {
         helper.setSubject(subject);
         helper.setText(body);
         helper.addAttachment(filename, new ByteArrayResource(attachment));
-        mailSender.send(message);
+        send(message);
+    }
+
+    public void sendEmailWithAttachment(String to, String subject, String body, File attachment, String filename) throws MessagingException {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setFrom(fromEmail);
+        helper.setTo(to);
+        helper.setSubject(subject);
+        helper.setText(body);
+//        the file is streamed from disk while the message is written to the socket
+        helper.addAttachment(filename, new FileSystemResource(attachment));
+        send(message);
+    }
+
+    public List<MessagingException> sendBatch(List<MimeMessage> messages) throws MessagingException {
+        return sendBatch(messages, index -> true);
+    }
+
+    public List<MessagingException> sendBatch(List<MimeMessage> messages, IntPredicate beforeSend) throws MessagingException {
+        if (smtpTransportPool.isEnabled()){
+            return smtpTransportPool.send(messages, beforeSend);
+        }
+//        the plain sender takes the batch in one call, so every message is checked up front
+        List<MessagingException> results = new ArrayList<>(messages.size());
+        List<MimeMessage> accepted = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++){
+            boolean send = beforeSend.test(i);
+            results.add(send ? null : new MessagingException(SmtpTransportPool.SKIPPED));
+            if (send){
+                accepted.add(messages.get(i));
+            }
+        }
+        if (accepted.isEmpty()){
+            return results;
+        }
+        try{
+            mailSender.send(accepted.toArray(new MimeMessage[0]));
+            return results;
+        }catch (MailSendException e){
+//            report per message, the ones that went out must not be retried
+            Map<Object, Exception> failed = e.getFailedMessages();
+            if (failed.isEmpty()){
+                throw e;
+            }
+            for (int i = 0; i < messages.size(); i++){
+                Exception failure = failed.get(messages.get(i));
+                if (failure != null){
+                    results.set(i, failure instanceof MessagingException messagingException ? messagingException
+                            : new MessagingException(failure.getMessage(), failure));
+                }
+            }
+            return results;
+        }
+    }
+
+    private void send(MimeMessage message) throws MessagingException {
+        if (!smtpTransportPool.isEnabled()){
+            mailSender.send(message);
+            return;
+        }
+        MessagingException failure = smtpTransportPool.send(List.of(message)).get(0);
+        if (failure != null){
+            throw failure;
+        }
     }
 }
@@ -0,0 +1,154 @@
+package com.satish.resumebuilderapi.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailTemplateService {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${app.email.templates.location:classpath:templates/email/}")
+    private String location;
+
+    @Value("${app.email.templates.hot-reload:false}")
+    private boolean hotReload;
+
+    private final ConcurrentMap<String, CompiledTemplate> templates = new ConcurrentHashMap<>();
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    public String render(String name, Map<String, ?> model){
+        CompiledTemplate template = templates.computeIfAbsent(name, this::compile);
+
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        for (int i = 0; i < template.literals.length; i++){
+            buffer.append(template.literals[i]);
+            if (i < template.variables.length){
+                Object value = model.get(template.variables[i]);
+                if (value != null){
+                    if (template.html){
+                        escapeHtml(value.toString(), buffer);
+                    }else {
+                        buffer.append(value);
+                    }
+                }
+            }
+        }
+        String rendered = buffer.toString();
+
+//        don't let one huge render pin a large buffer to the thread forever
+        if (buffer.capacity() > MAX_RETAINED_BUFFER){
+            buffers.remove();
+        }
+        return rendered;
+    }
+
+    public void reload(){
+        templates.clear();
+        log.info("Email templates cleared, they will be recompiled on next use");
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.templates.reload-check-interval:10000}")
+    public void reloadChanged(){
+        if (!hotReload){
+            return;
+        }
+        templates.forEach((name, template) -> {
+            long lastModified = lastModified(resourceLoader.getResource(location + name));
+            if (lastModified > template.lastModified){
+                templates.put(name, compile(name));
+                log.info("Email template {} reloaded", name);
+            }
+        });
+    }
+
+    private CompiledTemplate compile(String name){
+        Resource resource = resourceLoader.getResource(location + name);
+        String source;
+        try (InputStream inputStream = resource.getInputStream()){
+            source = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }catch (IOException e){
+            throw new UncheckedIOException("Email template not found: " + name, e);
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int position = 0;
+        while (true){
+            int start = source.indexOf(OPEN, position);
+            int end = start < 0 ? -1 : source.indexOf(CLOSE, start + OPEN.length());
+            if (end < 0){
+                literals.add(source.substring(position));
+                break;
+            }
+            literals.add(source.substring(position, start));
+            variables.add(source.substring(start + OPEN.length(), end).trim());
+            position = end + CLOSE.length();
+        }
+
+        return new CompiledTemplate(
+                literals.toArray(new String[0]),
+                variables.toArray(new String[0]),
+                name.endsWith(".html"),
+                lastModified(resource));
+    }
+
+    private long lastModified(Resource resource){
+        try{
+            return resource.lastModified();
+        }catch (IOException e){
+//            resources inside a jar have no timestamp, those never hot-reload
+            return -1;
+        }
+    }
+
+    private void escapeHtml(String value, StringBuilder out){
+        for (int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch (c){
+                case '<' -> out.append("&lt;");
+                case '>' -> out.append("&gt;");
+                case '&' -> out.append("&amp;");
+                case '"' -> out.append("&quot;");
+                case '\'' -> out.append("&#39;");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static class CompiledTemplate {
+        private final String[] literals;
+        private final String[] variables;
+        private final boolean html;
+        private final long lastModified;
+
+        private CompiledTemplate(String[] literals, String[] variables, boolean html, long lastModified){
+            this.literals = literals;
+            this.variables = variables;
+            this.html = html;
+            this.lastModified = lastModified;
+        }
+    }
+}
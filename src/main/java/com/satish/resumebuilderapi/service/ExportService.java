@@ -0,0 +1,85 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.satish.resumebuilderapi.document.Payment;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.dto.AuthResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportService {
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuthService authService;
+    private final AutosaveBuffer autosaveBuffer;
+
+    @Value("${app.export.batch-size:100}")
+    private int batchSize;
+
+    public StreamingResponseBody exportResumes(Object principal, boolean gzip){
+        AuthResponse response = authService.getProfile(principal);
+//        the export streams from Mongo, buffered autosaves go there first
+        autosaveBuffer.flushUser(response.getId());
+        Query query = Query.query(Criteria.where("userId").is(response.getId()))
+                .with(Sort.by(Sort.Order.desc("updatedAt"), Sort.Order.desc("id")));
+        return stream(query, Resume.class, gzip);
+    }
+
+    public StreamingResponseBody exportPayments(Object principal, boolean gzip){
+        AuthResponse response = authService.getProfile(principal);
+        Query query = Query.query(Criteria.where("userId").is(response.getId()))
+                .with(Sort.by(Sort.Direction.DESC, "createdAt"));
+        return stream(query, Payment.class, gzip);
+    }
+
+    private <T> StreamingResponseBody stream(Query query, Class<T> type, boolean gzip){
+        query.cursorBatchSize(batchSize);
+        return outputStream -> {
+            OutputStream target = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            long count = 0;
+
+//            one document per line, read from the cursor and written straight out, never collected
+            try (Stream<T> documents = mongoTemplate.stream(query, type);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(target)){
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.setPrettyPrinter(new MinimalPrettyPrinter(""));
+
+                Iterator<T> iterator = documents.iterator();
+                while (iterator.hasNext()){
+                    writer.writeValue(generator, iterator.next());
+                    generator.writeRaw('\n');
+                    if (++count % batchSize == 0){
+                        generator.flush();
+                    }
+                }
+                generator.flush();
+            }
+
+            if (target instanceof GZIPOutputStream gzipOutputStream){
+                gzipOutputStream.finish();
+            }
+            log.info("Exported {} {} documents", count, type.getSimpleName());
+        };
+    }
+}
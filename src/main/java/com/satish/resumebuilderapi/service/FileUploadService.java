@@ -1,33 +1,112 @@
 package com.satish.resumebuilderapi.service;
 
-import com.cloudinary.Cloudinary;
-import com.cloudinary.utils.ObjectUtils;
 import com.satish.resumebuilderapi.document.Resume;
 import com.satish.resumebuilderapi.dto.AuthResponse;
 import com.satish.resumebuilderapi.repository.ResumeRepository;
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileUploadService {
 
-    private final Cloudinary cloudinary;
+    private final ImageStoreService imageStoreService;
     private final AuthService authService;
     private final ResumeRepository resumeRepository;
+    private final ResumeCache resumeCache;
+    private final ThumbnailService thumbnailService;
+    private final AutosaveBuffer autosaveBuffer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.uploads.max-image-size:5MB}")
+    private DataSize maxImageSize;
+
+    @Value("${app.uploads.spool-dir:${java.io.tmpdir}}")
+    private String spoolDir;
+
+    @Value("${app.uploads.deadline:20s}")
+    private Duration uploadDeadline;
+
+//    uploads are pure network waits, a virtual thread each costs next to nothing
+    private final ExecutorService uploadExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     public Map<String, String> uploadSingleImage(MultipartFile file) throws IOException {
-        Map<String, Object> imageUploadResult = cloudinary.uploader().upload(file.getBytes(), ObjectUtils.asMap("resource_type", "image"));
-        log.info("Inside FileUploadService - uploadSingleImage(): {}", imageUploadResult.get("secure_url").toString());
-        return Map.of("imageUrl", imageUploadResult.get("secure_url").toString());
+//        not retained, a signup that uses it is found by the release job's recount of User.profileImage
+//        and an upload nobody ends up using is released after the grace period
+        String url = storeImage(file);
+        return Map.of("imageUrl", url);
+    }
+
+    private String storeImage(MultipartFile file) throws IOException {
+//        step 1: copy the part to our own file, hashing and counting it in the same pass
+        SpooledImage spooled = spool(file);
+        try{
+//            step 2: an image we already hold is returned as is, otherwise Cloudinary streams the File from disk
+            String url = imageStoreService.store(spooled.sha256(), spooled.sizeBytes(), spooled.path().toFile());
+            log.info("Inside FileUploadService - storeImage(): {}", url);
+            return url;
+        }finally {
+            Files.deleteIfExists(spooled.path());
+        }
+    }
+
+    private SpooledImage spool(MultipartFile file) throws IOException {
+        if (file.getSize() > maxImageSize.toBytes()){
+            throw new MaxUploadSizeExceededException(maxImageSize.toBytes());
+        }
+//        one pass over the part, hashed and counted on the way to the spool file
+        MessageDigest digest = ImageStoreService.newDigest();
+        Path spooled = Files.createTempFile(Path.of(spoolDir), "upload-", ".img");
+        long total = 0;
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest);
+             OutputStream out = Files.newOutputStream(spooled)){
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1){
+                total += read;
+                if (total > maxImageSize.toBytes()){
+                    throw new MaxUploadSizeExceededException(maxImageSize.toBytes());
+                }
+                out.write(buffer, 0, read);
+            }
+        }catch (IOException | RuntimeException e){
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return new SpooledImage(spooled, total, ImageStoreService.hex(digest));
     }
 
     public Map<String, String> uploadResumeImages(String resumeId,
@@ -38,33 +117,102 @@ public class FileUploadService {
 //        step 1: get the current profile
         AuthResponse response = authService.getProfile(principal);
 
-//        step 2: get the existing resume
+//        step 2: get the existing resume, with any buffered autosave written first
+        autosaveBuffer.flush(response.getId(), resumeId);
         Resume existingResume = resumeRepository.findByUserIdAndId(response.getId(), resumeId)
                 .orElseThrow(()-> new RuntimeException("Resume not found"));
 
-//        step 3: upload the resume images and set the resume
+//        step 3: upload both images at the same time, the endpoint waits for the slower one instead of the sum
         Map<String, String> returnValue = new HashMap<>();
-        Map<String , String> uploadResult ;
-        if (Objects.nonNull(thumbnail)) {
-            uploadResult = uploadSingleImage(thumbnail);
-            existingResume.setThumbnailLink(uploadResult.get("imageUrl"));
-            returnValue.put("thumbnailLink", uploadResult.get("imageUrl"));
+        String previousThumbnail = existingResume.getThumbnailLink();
+        String previousProfileImage = Objects.isNull(existingResume.getProfileInfo()) ? null : existingResume.getProfileInfo().getProfilePreviewUrl();
+        Map<String, String> uploaded = uploadConcurrently(Map.of(
+                "thumbnail", Optional.ofNullable(thumbnail),
+                "profileImage", Optional.ofNullable(profileImage)));
+
+        if (uploaded.containsKey("thumbnail")){
+            existingResume.setThumbnailLink(uploaded.get("thumbnail"));
+            returnValue.put("thumbnailLink", uploaded.get("thumbnail"));
         }
 
-       if (Objects.nonNull(profileImage)){
-           uploadResult = uploadSingleImage(profileImage);
+       if (uploaded.containsKey("profileImage")){
            if (Objects.isNull(existingResume.getProfileInfo())){
                existingResume.setProfileInfo(new Resume.ProfileInfo());
            }
-           existingResume.getProfileInfo().setProfilePreviewUrl(uploadResult.get("imageUrl"));
-           returnValue.put("profilePreviewUrl", uploadResult.get("imageUrl"));
+           existingResume.getProfileInfo().setProfilePreviewUrl(uploaded.get("profileImage"));
+           returnValue.put("profilePreviewUrl", uploaded.get("profileImage"));
        }
 
 //        step 4: save the details into database
-        resumeRepository.save(existingResume);
+        resumeCache.put(resumeRepository.save(existingResume));
+        if (uploaded.containsKey("thumbnail")){
+//            only once the client thumbnail is stored, a failed upload keeps the queued server render
+//            a render already running is safe, the save bumped the version its write is guarded by
+            thumbnailService.cancel(resumeId);
+            imageStoreService.replace(previousThumbnail, uploaded.get("thumbnail"));
+        }
+        if (uploaded.containsKey("profileImage")){
+            imageStoreService.replace(previousProfileImage, uploaded.get("profileImage"));
+        }
        returnValue.put("message", "Images uploaded successfully");
 
 //        step 5: return the result
         return returnValue;
     }
+
+    private Map<String, String> uploadConcurrently(Map<String, Optional<MultipartFile>> parts) throws IOException {
+        Timer.Sample total = Timer.start(meterRegistry);
+        long deadline = System.nanoTime() + uploadDeadline.toNanos();
+        CompletionService<Map.Entry<String, String>> completions = new ExecutorCompletionService<>(uploadExecutor);
+        List<Future<Map.Entry<String, String>>> futures = new ArrayList<>();
+        parts.forEach((name, part) -> part.ifPresent(file -> futures.add(completions.submit(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            try{
+                return Map.entry(name, storeImage(file));
+            }finally {
+                sample.stop(meterRegistry.timer("resume.image.upload", "part", name));
+            }
+        }))));
+
+        Map<String, String> urls = new HashMap<>();
+        try{
+//            take uploads in the order they finish, so a failure is seen at once, all under one deadline
+            for (int i = 0; i < futures.size(); i++){
+                Future<Map.Entry<String, String>> done = completions.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (done == null){
+                    throw new TimeoutException();
+                }
+                Map.Entry<String, String> url = done.get();
+                urls.put(url.getKey(), url.getValue());
+            }
+            return urls;
+        }catch (TimeoutException e){
+            throw new ServiceBusyException("Image upload timed out, please try again");
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new ServiceBusyException("Image upload interrupted");
+        }catch (ExecutionException e){
+            if (e.getCause() instanceof IOException ioException){
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException){
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Image upload failed", e.getCause());
+        }finally {
+//            on any failure the other upload is interrupted and the resume is never saved
+            if (urls.size() != futures.size()){
+                futures.forEach(future -> future.cancel(true));
+            }
+            total.stop(meterRegistry.timer("resume.images.upload", "parts", String.valueOf(futures.size())));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        uploadExecutor.shutdownNow();
+    }
+
+    private record SpooledImage(Path path, long sizeBytes, String sha256){
+    }
 }
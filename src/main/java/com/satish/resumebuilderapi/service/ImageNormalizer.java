@@ -0,0 +1,352 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Node;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageNormalizer {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+    private static final String APP1 = "225";
+    private static final byte[] EXIF_HEADER = {'E', 'x', 'i', 'f', 0, 0};
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.images.normalize.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.images.normalize.threads:0}")
+    private int threads;
+
+    @Value("${app.images.normalize.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${app.images.normalize.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${app.images.max-width:1600}")
+    private int maxWidth;
+
+    @Value("${app.images.max-height:1600}")
+    private int maxHeight;
+
+    @Value("${app.images.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${app.images.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    private ThreadPoolExecutor executor;
+    private ExecutorService monitoredExecutor;
+
+    @PostConstruct
+    public void init(){
+//        decoding and scaling are pure CPU work, more threads than cores would only queue on the CPU instead
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-normalize-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        monitoredExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "imageNormalize");
+        log.info("Image normalize pool started with {} threads, queue {}", poolSize, queueCapacity);
+    }
+
+//    empty means the original should be stored as it is
+    public Optional<byte[]> normalize(File file){
+        return normalize(() -> ImageIO.createImageInputStream(file), file.length());
+    }
+
+    public Optional<byte[]> normalize(byte[] bytes){
+        return normalize(() -> ImageIO.createImageInputStream(new ByteArrayInputStream(bytes)), bytes.length);
+    }
+
+    private Optional<byte[]> normalize(Source source, long originalSize){
+        if (!enabled){
+            return Optional.empty();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+            Future<Optional<byte[]>> future;
+            try{
+                future = monitoredExecutor.submit(() -> process(source, originalSize));
+            }catch (RejectedExecutionException e){
+                meterRegistry.counter("resume.image.normalize.rejected").increment();
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }
+
+            try{
+                return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }catch (TimeoutException e){
+                future.cancel(true);
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new ServiceBusyException("Request interrupted while processing image");
+            }catch (ExecutionException e){
+                if (e.getCause() instanceof RuntimeException runtimeException){
+                    throw runtimeException;
+                }
+                throw new IllegalStateException("Image processing failed", e.getCause());
+            }
+        }finally {
+            sample.stop(meterRegistry.timer("resume.image.normalize"));
+        }
+    }
+
+    private Optional<byte[]> process(Source source, long originalSize) throws IOException {
+        try (ImageInputStream in = source.open()){
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()){
+//                a format ImageIO cannot decode, e.g. webp, is left to Cloudinary
+                return Optional.empty();
+            }
+            ImageReader reader = readers.next();
+            try{
+                reader.setInput(in, true, true);
+                if ("gif".equalsIgnoreCase(reader.getFormatName())){
+//                    re-encoding would drop the animation
+                    return Optional.empty();
+                }
+
+//                step 1: the header gives the dimensions, a decompression bomb is refused before any pixel is allocated
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels){
+                    meterRegistry.counter("resume.image.normalize.refused").increment();
+                    throw new IllegalArgumentException("Image dimensions are too large");
+                }
+
+//                step 2: decode at about twice the target, skipping rows and columns keeps a 6000px photo from being decoded in full
+                int orientation = orientation(reader);
+                boolean swapped = orientation >= 5;
+                double scale = Math.min(1.0, swapped
+                        ? Math.min((double) maxWidth / height, (double) maxHeight / width)
+                        : Math.min((double) maxWidth / width, (double) maxHeight / height));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = (int) Math.round(1 / (scale * 2));
+                if (subsampling > 1){
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage decoded = reader.read(0, param);
+
+//                step 3: downscale, turn upright and re-encode, JPEG unless transparency has to survive
+                boolean alpha = decoded.getColorModel().hasAlpha();
+                BufferedImage scaled = scale(decoded, Math.max(1, (int) Math.round(width * scale)),
+                        Math.max(1, (int) Math.round(height * scale)), alpha);
+                byte[] encoded = alpha ? encodePng(orient(scaled, orientation, alpha)) : encodeJpeg(orient(scaled, orientation, alpha));
+
+//                step 4: an image that was already small and compact is kept as uploaded, its EXIF orientation intact
+                if (scale == 1.0 && encoded.length >= originalSize){
+                    return Optional.empty();
+                }
+                meterRegistry.counter("resume.image.normalize.saved.bytes").increment(Math.max(0, originalSize - encoded.length));
+                return Optional.of(encoded);
+            }catch (IOException e){
+//                e.g. a CMYK JPEG, Cloudinary still accepts it
+                log.warn("Could not normalize image, storing it as uploaded: {}", e.getMessage());
+                return Optional.empty();
+            }finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage source, int width, int height, boolean alpha){
+//        halve until the target is reached, a single bilinear step from far away loses detail
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do{
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try{
+                if (!alpha){
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, currentWidth, currentHeight);
+                }
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            }finally {
+                graphics.dispose();
+            }
+            current = next;
+        }while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+//    the encoder writes no EXIF, so the rotation or mirroring a camera recorded there is applied to the pixels
+    private int orientation(ImageReader reader) throws IOException {
+        if (!"jpeg".equalsIgnoreCase(reader.getFormatName())){
+            return 1;
+        }
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (metadata == null){
+            return 1;
+        }
+        Node markers = child(metadata.getAsTree(JPEG_METADATA_FORMAT), "markerSequence");
+        for (Node marker = markers == null ? null : markers.getFirstChild(); marker != null; marker = marker.getNextSibling()){
+            if ("unknown".equals(marker.getNodeName()) && marker instanceof IIOMetadataNode node
+                    && APP1.equals(node.getAttribute("MarkerTag")) && node.getUserObject() instanceof byte[] data){
+                int orientation = exifOrientation(data);
+                if (orientation != 0){
+                    return orientation;
+                }
+            }
+        }
+        return 1;
+    }
+
+    private static Node child(Node parent, String name){
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()){
+            if (name.equals(node.getNodeName())){
+                return node;
+            }
+        }
+        return null;
+    }
+
+//    reads tag 0x0112 from IFD0 of an APP1 segment, 0 when the segment is not EXIF or has no valid orientation
+    static int exifOrientation(byte[] data){
+        int tiff = EXIF_HEADER.length;
+        if (data.length < tiff + 8 || !Arrays.equals(data, 0, tiff, EXIF_HEADER, 0, tiff)){
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (data[tiff] == 'I' && data[tiff + 1] == 'I'){
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }else if (data[tiff] != 'M' || data[tiff + 1] != 'M'){
+            return 0;
+        }
+        long ifd = tiff + Integer.toUnsignedLong(buffer.getInt(tiff + 4));
+        if (ifd + 2 > data.length){
+            return 0;
+        }
+        int entries = Short.toUnsignedInt(buffer.getShort((int) ifd));
+        for (int i = 0; i < entries; i++){
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > data.length){
+                return 0;
+            }
+            if (Short.toUnsignedInt(buffer.getShort(entry)) == ORIENTATION_TAG){
+                int orientation = Short.toUnsignedInt(buffer.getShort(entry + 8));
+                return orientation >= 1 && orientation <= 8 ? orientation : 0;
+            }
+        }
+        return 0;
+    }
+
+    private BufferedImage orient(BufferedImage source, int orientation, boolean alpha){
+        int width = source.getWidth();
+        int height = source.getHeight();
+//        maps source pixels to the upright image, 5 to 8 also swap width and height
+        AffineTransform transform = switch (orientation){
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, height, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, height, width);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, width);
+            default -> null;
+        };
+        if (transform == null){
+            return source;
+        }
+        boolean swapped = orientation >= 5;
+        BufferedImage oriented = new BufferedImage(swapped ? height : width, swapped ? width : height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = oriented.createGraphics();
+        try{
+            graphics.drawImage(source, transform, null);
+        }finally {
+            graphics.dispose();
+        }
+        return oriented;
+    }
+
+    private byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)){
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(ios);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private byte[] encodePng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private interface Source {
+        ImageInputStream open() throws IOException;
+    }
+}
@@ -0,0 +1,216 @@
+package com.satish.resumebuilderapi.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.utils.ObjectUtils;
+import com.mongodb.client.result.UpdateResult;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.document.StoredImage;
+import com.satish.resumebuilderapi.document.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageStoreService {
+
+    private final Cloudinary cloudinary;
+    private final MongoTemplate mongoTemplate;
+    private final ImageNormalizer imageNormalizer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.images.release-grace:1h}")
+    private Duration releaseGrace;
+
+    @Value("${app.images.release-batch-size:100}")
+    private int releaseBatchSize;
+
+    static MessageDigest newDigest(){
+        try{
+            return MessageDigest.getInstance("SHA-256");
+        }catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    static String hex(MessageDigest digest){
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public String store(String sha256, long sizeBytes, File file) throws IOException {
+        return store(sha256, sizeBytes, file, () -> imageNormalizer.normalize(file));
+    }
+
+    public String store(byte[] bytes) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(bytes);
+        return store(hex(digest), bytes.length, bytes, () -> imageNormalizer.normalize(bytes));
+    }
+
+    private String store(String sha256, long sizeBytes, Object source, Supplier<Optional<byte[]>> normalizer) throws IOException {
+//        step 1: a known hash is answered from Mongo, no bytes leave the server, and a pending release is called off
+        StoredImage existing = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(sha256)),
+                new Update().set("lastUsedAt", LocalDateTime.now()).unset("releaseClaim"),
+                FindAndModifyOptions.options().returnNew(true),
+                StoredImage.class);
+        if (existing != null){
+            meterRegistry.counter("resume.image.dedup", "result", "hit").increment();
+            return existing.getUrl();
+        }
+        meterRegistry.counter("resume.image.dedup", "result", "miss").increment();
+
+//        step 2: shrink and re-encode before upload, the hash stays that of the original so a repeat skips this
+        Optional<byte[]> normalized = normalizer.get();
+        Object upload = normalized.<Object>map(bytes -> bytes).orElse(source);
+        long storedBytes = normalized.map(bytes -> (long) bytes.length).orElse(sizeBytes);
+
+//        step 3: the hash is also the public id, two racing uploads of one image end up on the same asset
+        Map<?, ?> uploadResult = cloudinary.uploader().upload(upload, ObjectUtils.asMap(
+                "resource_type", "image",
+                "public_id", "images/" + sha256,
+                "overwrite", false));
+        String url = uploadResult.get("secure_url").toString();
+        String publicId = uploadResult.get("public_id").toString();
+
+//        step 4: record it, starting unreferenced until a resume or profile retains it
+        LocalDateTime now = LocalDateTime.now();
+        StoredImage stored = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(sha256)),
+                new Update()
+                        .setOnInsert("url", url)
+                        .setOnInsert("publicId", publicId)
+                        .setOnInsert("sizeBytes", storedBytes)
+                        .setOnInsert("refCount", 0L)
+                        .setOnInsert("createdAt", now)
+                        .set("lastUsedAt", now)
+                        .unset("releaseClaim"),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                StoredImage.class);
+        return stored == null ? url : stored.getUrl();
+    }
+
+    public void retain(String url){
+        if (url == null){
+            return;
+        }
+//        urls that did not come through the store, e.g. older uploads, simply match nothing
+        mongoTemplate.updateFirst(Query.query(Criteria.where("url").is(url)),
+                new Update().inc("refCount", 1).set("lastUsedAt", LocalDateTime.now()).unset("releaseClaim"),
+                StoredImage.class);
+    }
+
+//    one round trip for many references, a url listed twice is retained twice
+    public void retainAll(Collection<String> urls){
+        Map<String, Long> counts = urls.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        if (counts.isEmpty()){
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StoredImage.class);
+        counts.forEach((url, count) -> bulk.updateOne(Query.query(Criteria.where("url").is(url)),
+                new Update().inc("refCount", count).set("lastUsedAt", now).unset("releaseClaim")));
+        bulk.execute();
+    }
+
+    public void release(String url){
+        if (url == null){
+            return;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("url").is(url).and("refCount").gt(0)),
+                new Update().inc("refCount", -1),
+                StoredImage.class);
+    }
+
+    public void replace(String previousUrl, String url){
+        if (Objects.equals(previousUrl, url)){
+            return;
+        }
+        retain(url);
+        release(previousUrl);
+    }
+
+    @Scheduled(fixedDelayString = "${app.images.release-interval:600000}", initialDelayString = "${app.images.release-interval:600000}")
+    public void releaseUnused(){
+        LocalDateTime cutoff = LocalDateTime.now().minus(releaseGrace);
+        Query unused = Query.query(Criteria.where("refCount").lte(0).and("lastUsedAt").lt(cutoff)).limit(releaseBatchSize);
+        List<StoredImage> candidates = mongoTemplate.find(unused, StoredImage.class);
+
+        int released = 0;
+        for (StoredImage candidate : candidates){
+//            step 1: the count is only a hint, a resume or user profile that still shows the image keeps it alive
+            long references = mongoTemplate.count(Query.query(new Criteria().orOperator(
+                    Criteria.where("thumbnailLink").is(candidate.getUrl()),
+                    Criteria.where("profileInfo.profilePreviewUrl").is(candidate.getUrl()))), Resume.class)
+                    + mongoTemplate.count(Query.query(Criteria.where("profileImage").is(candidate.getUrl())), User.class);
+            if (references > 0){
+                mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(candidate.getId())),
+                        new Update().set("refCount", references), StoredImage.class);
+                continue;
+            }
+
+//            step 2: claim the record, it stays in place while the asset is destroyed
+            String claim = UUID.randomUUID().toString();
+            UpdateResult claimed = mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(candidate.getId())
+                    .and("refCount").lte(0)
+                    .and("lastUsedAt").lt(cutoff)), new Update().set("releaseClaim", claim), StoredImage.class);
+            if (claimed.getModifiedCount() == 0){
+                continue;
+            }
+            try{
+                cloudinary.uploader().destroy(candidate.getPublicId(), ObjectUtils.asMap("resource_type", "image", "invalidate", true));
+            }catch (Exception e){
+                log.warn("Could not delete unused image {}: {}", candidate.getPublicId(), e.getMessage());
+                mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(candidate.getId()).and("releaseClaim").is(claim)),
+                        new Update().unset("releaseClaim"), StoredImage.class);
+                continue;
+            }
+
+//            step 3: drop the record only if still ours, a dedup hit or upload meanwhile removed the claim
+            StoredImage removed = mongoTemplate.findAndRemove(Query.query(Criteria.where("id").is(candidate.getId())
+                    .and("releaseClaim").is(claim)), StoredImage.class);
+            if (removed != null){
+                released++;
+                continue;
+            }
+//            the image was reused while its asset was being destroyed, dropping the record makes the next upload of it
+//            recreate the asset under the same public id, which repairs the url that was handed out
+            log.warn("Image {} was reused while it was being released", candidate.getPublicId());
+            meterRegistry.counter("resume.image.release.raced").increment();
+            mongoTemplate.remove(Query.query(Criteria.where("id").is(candidate.getId())), StoredImage.class);
+        }
+        if (released > 0){
+            log.info("Released {} unused images", released);
+            meterRegistry.counter("resume.image.released").increment(released);
+        }
+    }
+}
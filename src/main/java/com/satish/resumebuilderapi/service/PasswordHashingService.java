@@ -0,0 +1,119 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PasswordHashingService {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[aby]?\\$(\\d{2})\\$");
+
+    private final PasswordEncoder passwordEncoder;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.bcrypt.strength:10}")
+    private int strength;
+
+    @Value("${app.security.bcrypt.threads:0}")
+    private int threads;
+
+    @Value("${app.security.bcrypt.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.security.bcrypt.timeout:5s}")
+    private Duration timeout;
+
+    private ThreadPoolExecutor executor;
+    private ExecutorService monitoredExecutor;
+
+    @PostConstruct
+    public void init(){
+//        0 means half of the cores, so hashing can never take every CPU away from request threads
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        monitoredExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "bcrypt");
+        log.info("Password hashing pool started with {} threads, queue {}, cost factor {}", poolSize, queueCapacity, strength);
+    }
+
+    public String encode(String rawPassword){
+        return execute("encode", () -> passwordEncoder.encode(rawPassword));
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword){
+        return execute("matches", () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    public boolean needsRehash(String encodedPassword){
+        if (encodedPassword == null){
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    private <T> T execute(String operation, Callable<T> task){
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+            Future<T> future;
+            try{
+                future = monitoredExecutor.submit(task);
+            }catch (RejectedExecutionException e){
+                meterRegistry.counter("password.hash.rejected", "operation", operation).increment();
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }
+
+            try{
+                return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }catch (TimeoutException e){
+                future.cancel(true);
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new ServiceBusyException("Request interrupted while hashing password");
+            }catch (ExecutionException e){
+                throw new IllegalStateException("Password hashing failed", e.getCause());
+            }
+        }finally {
+            sample.stop(meterRegistry.timer("password.hash", "operation", operation));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdown();
+    }
+}
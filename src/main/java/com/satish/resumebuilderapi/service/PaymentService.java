@@ -9,6 +9,7 @@ import com.satish.resumebuilderapi.document.User;
 import com.satish.resumebuilderapi.dto.AuthResponse;
 import com.satish.resumebuilderapi.repository.PaymentRepository;
 import com.satish.resumebuilderapi.repository.UserRepository;
+import com.satish.resumebuilderapi.security.UserPrincipalCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
@@ -29,6 +30,7 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final AuthService authService;
     private final UserRepository userRepository;
+    private final UserPrincipalCache userPrincipalCache;
 
     @Value("${razorpay.key.id}")
     private String razorpayKeyId;
@@ -110,6 +112,7 @@ public class PaymentService {
 
        existingUser.setSubscriptionPlan(planType);
        userRepository.save(existingUser);
+       userPrincipalCache.invalidate(userId);
         log.info("User {} upgrade to {} plan", userId, planType);
     }
 
@@ -0,0 +1,100 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.satish.resumebuilderapi.document.Resume;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResumeCache {
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.resumes.cache.max-weight-bytes:67108864}")
+    private long maxWeightBytes;
+
+    @Value("${app.resumes.cache.ttl:10m}")
+    private Duration ttl;
+
+    private Cache<Key, Resume> resumes;
+//    lowest version a put may bring back after an evict, so a slow write-through cannot resurrect an older copy
+    private Cache<Key, Long> evictedVersions;
+
+    @PostConstruct
+    public void init(){
+        resumes = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Key key, Resume resume) -> weigh(resume))
+//                expire after write, a copy that is read all the time must still be refreshed from Mongo eventually
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        evictedVersions = Caffeine.newBuilder()
+                .maximumSize(100_000)
+                .expireAfterWrite(ttl)
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, resumes, "resumes");
+        meterRegistry.gauge("resumes.cache.weight.bytes", resumes,
+                cache -> cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+    }
+
+    public Resume get(String userId, String resumeId, Supplier<Resume> loader){
+//        Caffeine computes each key at most once at a time, so concurrent misses share one Mongo load
+        return resumes.get(new Key(userId, resumeId), key -> loader.get());
+    }
+
+    public void put(Resume resume){
+        if (resume != null && resume.getId() != null){
+//            a write-through that lost a race with a newer save must not replace it
+            resumes.asMap().compute(new Key(resume.getUserId(), resume.getId()), (key, existing) -> {
+                Long evictedVersion = evictedVersions.getIfPresent(key);
+                if (evictedVersion != null && versionOf(resume) < evictedVersion){
+                    return existing;
+                }
+                return existing != null && versionOf(existing) > versionOf(resume) ? existing : resume;
+            });
+        }
+    }
+
+    public void evict(String userId, String resumeId){
+        resumes.invalidate(new Key(userId, resumeId));
+    }
+
+    public void evict(String userId, String resumeId, Long version){
+        Key key = new Key(userId, resumeId);
+        if (version != null){
+            evictedVersions.asMap().merge(key, version, Math::max);
+        }
+        resumes.invalidate(key);
+    }
+
+    private long versionOf(Resume resume){
+        return resume.getVersion() == null ? -1 : resume.getVersion();
+    }
+
+    private int weigh(Resume resume){
+        try{
+            return objectMapper.writeValueAsBytes(resume).length;
+        }catch (JsonProcessingException e){
+            log.warn("Could not weigh resume {}: {}", resume.getId(), e.getMessage());
+            return 4096;
+        }
+    }
+
+    private record Key(String userId, String resumeId){
+    }
+}
@@ -0,0 +1,364 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mongodb.bulk.BulkWriteError;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.dto.AuthResponse;
+import com.satish.resumebuilderapi.dto.ResumeImportResult;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumeImportService {
+
+    private static final int MAX_TITLE_LENGTH = 200;
+    private static final int MAX_SECTION_ITEMS = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final AuthService authService;
+    private final ResumeSearchIndex resumeSearchIndex;
+    private final ImageStoreService imageStoreService;
+
+    @Value("${app.import.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.import.max-records:10000}")
+    private int maxRecords;
+
+    public Map<String, Object> importResumes(InputStream body, Object principal) throws IOException {
+
+//        step 1: get the current profile
+        AuthResponse response = authService.getProfile(principal);
+        String userId = response.getId();
+
+        List<ResumeImportResult> results = new ArrayList<>();
+        List<Resume> batch = new ArrayList<>(batchSize);
+        List<ResumeImportResult> batchResults = new ArrayList<>(batchSize);
+        boolean truncated = false;
+        String parseError = null;
+
+//        step 2: read one record at a time, a JSON array or NDJSON, never the whole body
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)){
+            JsonToken first = parser.nextToken();
+            boolean array = first == JsonToken.START_ARRAY;
+            JsonToken token = array ? parser.nextToken() : first;
+            int index = 0;
+
+            while (token != null && token != JsonToken.END_ARRAY){
+                if (index >= maxRecords){
+                    truncated = true;
+                    break;
+                }
+                JsonNode record = parser.readValueAsTree();
+
+//                step 3: validate and map each record on its own, one bad record does not fail the rest
+                ResumeImportResult result = ResumeImportResult.builder().index(index).build();
+                try{
+                    Resume resume = toResume(record, userId);
+                    result.setId(resume.getId());
+                    result.setTitle(resume.getTitle());
+                    batch.add(resume);
+                    batchResults.add(result);
+                }catch (IllegalArgumentException e){
+                    result.setStatus(ResumeImportResult.FAILED);
+                    result.setError(e.getMessage());
+                }
+                results.add(result);
+
+//                step 4: flush full batches as a single unordered bulk insert
+                if (batch.size() >= batchSize){
+                    flush(batch, batchResults);
+                }
+                index++;
+                token = parser.nextToken();
+            }
+        }catch (JsonProcessingException e){
+//            earlier batches are already in Mongo, so stop here and report what was saved along with the error
+            parseError = e.getLocation() == null
+                    ? "Malformed JSON: " + e.getOriginalMessage()
+                    : "Malformed JSON at line " + e.getLocation().getLineNr() + ", column " + e.getLocation().getColumnNr() + ": " + e.getOriginalMessage();
+            log.warn("Resume import stopped after {} records: {}", results.size(), parseError);
+        }
+        flush(batch, batchResults);
+
+//        step 5: return the per record results
+        long created = results.stream().filter(result -> ResumeImportResult.CREATED.equals(result.getStatus())).count();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("imported", created);
+        summary.put("failed", results.size() - created);
+        summary.put("truncated", truncated);
+        if (parseError != null){
+            summary.put("error", parseError);
+        }
+        summary.put("results", results);
+        return summary;
+    }
+
+    private void flush(List<Resume> batch, List<ResumeImportResult> batchResults){
+        if (batch.isEmpty()){
+            return;
+        }
+        Set<Integer> failedPositions = new HashSet<>();
+        try{
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Resume.class)
+                    .insert(batch)
+                    .execute();
+        }catch (BulkOperationException e){
+//            unordered, so every other document in the batch is still written
+            for (BulkWriteError error : e.getErrors()){
+                failedPositions.add(error.getIndex());
+                batchResults.get(error.getIndex()).setError(error.getMessage());
+            }
+        }catch (RuntimeException e){
+            log.error("Resume import batch of {} failed: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++){
+                failedPositions.add(i);
+                batchResults.get(i).setError(e.getMessage());
+            }
+        }
+
+//        thumbnails are rendered lazily when the resumes are first listed, an import never queues a render per record
+        List<String> profileImages = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++){
+            ResumeImportResult result = batchResults.get(i);
+            if (failedPositions.contains(i)){
+                result.setStatus(ResumeImportResult.FAILED);
+                result.setId(null);
+            }else {
+                result.setStatus(ResumeImportResult.CREATED);
+                resumeSearchIndex.index(batch.get(i));
+                profileImages.add(batch.get(i).getProfileInfo().getProfilePreviewUrl());
+            }
+        }
+        try{
+            imageStoreService.retainAll(profileImages);
+        }catch (RuntimeException e){
+//            an unreferenced count only delays cleanup, the release job recounts before deleting
+            log.warn("Could not retain the profile images of an imported batch: {}", e.getMessage());
+        }
+        batch.clear();
+        batchResults.clear();
+    }
+
+    private Resume toResume(JsonNode record, String userId){
+        if (record == null || !record.isObject()){
+            throw new IllegalArgumentException("Record must be a JSON object");
+        }
+
+        Resume resume;
+        try{
+            resume = isJsonResume(record)
+                    ? fromJsonResume((ObjectNode) record)
+                    : objectMapper.treeToValue(record, Resume.class);
+        }catch (IOException | IllegalArgumentException e){
+            throw new IllegalArgumentException("Invalid resume: " + e.getMessage());
+        }
+
+//        ids and ownership always come from the server, never from the file
+        LocalDateTime now = LocalDateTime.now();
+        resume.setId(new ObjectId().toHexString());
+        resume.setUserId(userId);
+        resume.setVersion(0L);
+//        the thumbnail is ours to render, a link from the file may point anywhere
+        resume.setThumbnailLink(null);
+        resume.setCreateAt(now);
+        resume.setUpdatedAt(now);
+        fillDefaults(resume);
+        validate(resume);
+        return resume;
+    }
+
+    private boolean isJsonResume(JsonNode record){
+        return record.has("basics") || record.has("work") || record.has("$schema");
+    }
+
+//    maps the jsonresume.org schema onto our own document
+    private Resume fromJsonResume(ObjectNode record){
+        JsonNode basics = record.path("basics");
+        Resume resume = new Resume();
+
+        Resume.ProfileInfo profileInfo = new Resume.ProfileInfo();
+        profileInfo.setFullName(text(basics, "name"));
+        profileInfo.setDesignation(text(basics, "label"));
+        profileInfo.setSummary(text(basics, "summary"));
+        profileInfo.setProfilePreviewUrl(text(basics, "image"));
+        resume.setProfileInfo(profileInfo);
+
+        Resume.ContactInfo contactInfo = new Resume.ContactInfo();
+        contactInfo.setEmail(text(basics, "email"));
+        contactInfo.setPhone(text(basics, "phone"));
+        contactInfo.setWebsite(text(basics, "url"));
+        contactInfo.setLocation(join(", ", text(basics.path("location"), "city"), text(basics.path("location"), "region")));
+        for (JsonNode profile : basics.path("profiles")){
+            String network = text(profile, "network");
+            if ("linkedin".equalsIgnoreCase(network)){
+                contactInfo.setLinkedIn(text(profile, "url"));
+            }else if ("github".equalsIgnoreCase(network)){
+                contactInfo.setGithub(text(profile, "url"));
+            }
+        }
+        resume.setContactInfo(contactInfo);
+
+        String title = text(record.path("meta"), "title");
+        if (title == null){
+            title = profileInfo.getFullName() != null ? profileInfo.getFullName() + " Resume" : "Imported resume";
+        }
+        resume.setTitle(title);
+
+        List<Resume.WorkExperience> workExperiences = new ArrayList<>();
+        for (JsonNode work : record.path("work")){
+            Resume.WorkExperience experience = new Resume.WorkExperience();
+            experience.setCompany(text(work, "name") != null ? text(work, "name") : text(work, "company"));
+            experience.setRole(text(work, "position"));
+            experience.setStartDate(text(work, "startDate"));
+            experience.setEndDate(text(work, "endDate"));
+            List<String> lines = new ArrayList<>();
+            if (text(work, "summary") != null){
+                lines.add(text(work, "summary"));
+            }
+            work.path("highlights").forEach(highlight -> lines.add("- " + highlight.asText()));
+            experience.setDescription(lines.isEmpty() ? null : String.join("\n", lines));
+            workExperiences.add(experience);
+        }
+        resume.setWorkExperiences(workExperiences);
+
+        List<Resume.Education> educations = new ArrayList<>();
+        for (JsonNode entry : record.path("education")){
+            Resume.Education education = new Resume.Education();
+            education.setDegree(join(" ", text(entry, "studyType"), text(entry, "area")));
+            education.setInstitution(text(entry, "institution"));
+            education.setStartDate(text(entry, "startDate"));
+            education.setEndDate(text(entry, "endDate"));
+            educations.add(education);
+        }
+        resume.setEducations(educations);
+
+        List<Resume.Skill> skills = new ArrayList<>();
+        for (JsonNode entry : record.path("skills")){
+            Resume.Skill skill = new Resume.Skill();
+            skill.setName(text(entry, "name"));
+            skills.add(skill);
+        }
+        resume.setSkills(skills);
+
+        List<Resume.Project> projects = new ArrayList<>();
+        for (JsonNode entry : record.path("projects")){
+            Resume.Project project = new Resume.Project();
+            project.setTitle(text(entry, "name"));
+            project.setDescription(text(entry, "description"));
+            project.setLiveDemo(text(entry, "url"));
+            projects.add(project);
+        }
+        resume.setProjects(projects);
+
+        List<Resume.Certification> certifications = new ArrayList<>();
+        for (JsonNode entry : record.path("certificates")){
+            Resume.Certification certification = new Resume.Certification();
+            certification.setTitle(text(entry, "name"));
+            certification.setIssuer(text(entry, "issuer"));
+            String date = text(entry, "date");
+            certification.setYear(date != null && date.length() >= 4 ? date.substring(0, 4) : date);
+            certifications.add(certification);
+        }
+        resume.setCertifications(certifications);
+
+        List<Resume.Language> languages = new ArrayList<>();
+        for (JsonNode entry : record.path("languages")){
+            Resume.Language language = new Resume.Language();
+            language.setName(text(entry, "language"));
+            languages.add(language);
+        }
+        resume.setLanguages(languages);
+
+        List<String> interests = new ArrayList<>();
+        for (JsonNode entry : record.path("interests")){
+            String name = text(entry, "name");
+            if (name != null){
+                interests.add(name);
+            }
+        }
+        resume.setInterests(interests);
+        return resume;
+    }
+
+    private void fillDefaults(Resume resume){
+        if (resume.getProfileInfo() == null){
+            resume.setProfileInfo(new Resume.ProfileInfo());
+        }
+        if (resume.getContactInfo() == null){
+            resume.setContactInfo(new Resume.ContactInfo());
+        }
+        if (resume.getWorkExperiences() == null){
+            resume.setWorkExperiences(new ArrayList<>());
+        }
+        if (resume.getEducations() == null){
+            resume.setEducations(new ArrayList<>());
+        }
+        if (resume.getSkills() == null){
+            resume.setSkills(new ArrayList<>());
+        }
+        if (resume.getProjects() == null){
+            resume.setProjects(new ArrayList<>());
+        }
+        if (resume.getCertifications() == null){
+            resume.setCertifications(new ArrayList<>());
+        }
+        if (resume.getLanguages() == null){
+            resume.setLanguages(new ArrayList<>());
+        }
+        if (resume.getInterests() == null){
+            resume.setInterests(new ArrayList<>());
+        }
+    }
+
+    private void validate(Resume resume){
+        if (resume.getTitle() == null || resume.getTitle().isBlank()){
+            throw new IllegalArgumentException("Title is required");
+        }
+        if (resume.getTitle().length() > MAX_TITLE_LENGTH){
+            throw new IllegalArgumentException("Title must be at most " + MAX_TITLE_LENGTH + " characters");
+        }
+        for (List<?> section : List.of(resume.getWorkExperiences(), resume.getEducations(), resume.getSkills(),
+                resume.getProjects(), resume.getCertifications(), resume.getLanguages(), resume.getInterests())){
+            if (section.size() > MAX_SECTION_ITEMS){
+                throw new IllegalArgumentException("Sections can hold at most " + MAX_SECTION_ITEMS + " items");
+            }
+        }
+    }
+
+    private String text(JsonNode node, String field){
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() || value.asText().isBlank() ? null : value.asText();
+    }
+
+    private String join(String separator, String first, String second){
+        if (first == null){
+            return second;
+        }
+        return second == null ? first : first + separator + second;
+    }
+}
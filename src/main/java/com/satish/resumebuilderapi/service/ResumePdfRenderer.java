@@ -0,0 +1,261 @@
+package com.satish.resumebuilderapi.service;
+
+import com.lowagie.text.Chunk;
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Element;
+import com.lowagie.text.Font;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.pdf.PdfWriter;
+import com.lowagie.text.pdf.draw.LineSeparator;
+import com.satish.resumebuilderapi.document.Resume;
+import org.springframework.stereotype.Component;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Component
+public class ResumePdfRenderer {
+
+    public static final String VERSION = "1";
+
+    private static final Color DEFAULT_ACCENT = new Color(0x63, 0x66, 0xf1);
+    private static final Color DEFAULT_TEXT = new Color(0x1f, 0x29, 0x37);
+
+    public byte[] render(Resume resume){
+        Theme theme = themeOf(resume.getTemplate());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(32 * 1024);
+        Document document = new Document(PageSize.A4, 48, 48, 48, 48);
+        try{
+            PdfWriter.getInstance(document, outputStream);
+            document.addTitle(Objects.toString(resume.getTitle(), "Resume"));
+            document.open();
+
+            addHeader(document, resume, theme);
+            addSummary(document, resume.getProfileInfo(), theme);
+            addWorkExperiences(document, resume.getWorkExperiences(), theme);
+            addEducations(document, resume.getEducations(), theme);
+            addProjects(document, resume.getProjects(), theme);
+            addSkills(document, resume.getSkills(), theme);
+            addCertifications(document, resume.getCertifications(), theme);
+            addLanguages(document, resume.getLanguages(), theme);
+            addInterests(document, resume.getInterests(), theme);
+        }catch (DocumentException e){
+            throw new IllegalStateException("Failed to render resume PDF", e);
+        }finally {
+            if (document.isOpen()){
+                document.close();
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private void addHeader(Document document, Resume resume, Theme theme) throws DocumentException {
+        Resume.ProfileInfo profile = resume.getProfileInfo();
+        String name = profile != null && hasText(profile.getFullName()) ? profile.getFullName() : resume.getTitle();
+        document.add(new Paragraph(Objects.toString(name, ""), theme.font(22, Font.BOLD, theme.accent)));
+        if (profile != null && hasText(profile.getDesignation())){
+            document.add(new Paragraph(profile.getDesignation(), theme.font(12, Font.NORMAL, theme.text)));
+        }
+
+        Resume.ContactInfo contact = resume.getContactInfo();
+        if (contact != null){
+            List<String> parts = new ArrayList<>();
+            for (String value : List.of(
+                    Objects.toString(contact.getEmail(), ""),
+                    Objects.toString(contact.getPhone(), ""),
+                    Objects.toString(contact.getLocation(), ""),
+                    Objects.toString(contact.getLinkedIn(), ""),
+                    Objects.toString(contact.getGithub(), ""),
+                    Objects.toString(contact.getWebsite(), ""))){
+                if (hasText(value)){
+                    parts.add(value);
+                }
+            }
+            if (!parts.isEmpty()){
+                document.add(new Paragraph(String.join("  |  ", parts), theme.font(9, Font.NORMAL, theme.text)));
+            }
+        }
+    }
+
+    private void addSummary(Document document, Resume.ProfileInfo profile, Theme theme) throws DocumentException {
+        if (profile == null || !hasText(profile.getSummary())){
+            return;
+        }
+        addSectionTitle(document, "Summary", theme);
+        document.add(body(profile.getSummary(), theme));
+    }
+
+    private void addWorkExperiences(Document document, List<Resume.WorkExperience> experiences, Theme theme) throws DocumentException {
+        if (isEmpty(experiences)){
+            return;
+        }
+        addSectionTitle(document, "Work Experience", theme);
+        for (Resume.WorkExperience experience : experiences){
+            addEntryTitle(document, join(" - ", experience.getRole(), experience.getCompany()), dates(experience.getStartDate(), experience.getEndDate()), theme);
+            if (hasText(experience.getDescription())){
+                document.add(body(experience.getDescription(), theme));
+            }
+        }
+    }
+
+    private void addEducations(Document document, List<Resume.Education> educations, Theme theme) throws DocumentException {
+        if (isEmpty(educations)){
+            return;
+        }
+        addSectionTitle(document, "Education", theme);
+        for (Resume.Education education : educations){
+            addEntryTitle(document, join(" - ", education.getDegree(), education.getInstitution()), dates(education.getStartDate(), education.getEndDate()), theme);
+        }
+    }
+
+    private void addProjects(Document document, List<Resume.Project> projects, Theme theme) throws DocumentException {
+        if (isEmpty(projects)){
+            return;
+        }
+        addSectionTitle(document, "Projects", theme);
+        for (Resume.Project project : projects){
+            addEntryTitle(document, project.getTitle(), join("  ", project.getGithub(), project.getLiveDemo()), theme);
+            if (hasText(project.getDescription())){
+                document.add(body(project.getDescription(), theme));
+            }
+        }
+    }
+
+    private void addSkills(Document document, List<Resume.Skill> skills, Theme theme) throws DocumentException {
+        if (isEmpty(skills)){
+            return;
+        }
+        addSectionTitle(document, "Skills", theme);
+        List<String> names = new ArrayList<>();
+        skills.forEach(skill -> {
+            if (hasText(skill.getName())){
+                names.add(skill.getName());
+            }
+        });
+        document.add(body(String.join(", ", names), theme));
+    }
+
+    private void addCertifications(Document document, List<Resume.Certification> certifications, Theme theme) throws DocumentException {
+        if (isEmpty(certifications)){
+            return;
+        }
+        addSectionTitle(document, "Certifications", theme);
+        for (Resume.Certification certification : certifications){
+            addEntryTitle(document, join(" - ", certification.getTitle(), certification.getIssuer()), Objects.toString(certification.getYear(), ""), theme);
+        }
+    }
+
+    private void addLanguages(Document document, List<Resume.Language> languages, Theme theme) throws DocumentException {
+        if (isEmpty(languages)){
+            return;
+        }
+        addSectionTitle(document, "Languages", theme);
+        List<String> names = new ArrayList<>();
+        languages.forEach(language -> {
+            if (hasText(language.getName())){
+                names.add(language.getName());
+            }
+        });
+        document.add(body(String.join(", ", names), theme));
+    }
+
+    private void addInterests(Document document, List<String> interests, Theme theme) throws DocumentException {
+        if (isEmpty(interests)){
+            return;
+        }
+        addSectionTitle(document, "Interests", theme);
+        document.add(body(String.join(", ", interests), theme));
+    }
+
+    private void addSectionTitle(Document document, String title, Theme theme) throws DocumentException {
+        Paragraph paragraph = new Paragraph(title.toUpperCase(), theme.font(11, Font.BOLD, theme.accent));
+        paragraph.setSpacingBefore(14);
+        document.add(paragraph);
+        document.add(new Chunk(new LineSeparator(0.8f, 100, theme.accent, Element.ALIGN_LEFT, -2)));
+    }
+
+    private void addEntryTitle(Document document, String title, String meta, Theme theme) throws DocumentException {
+        Paragraph paragraph = new Paragraph();
+        paragraph.setSpacingBefore(6);
+        paragraph.add(new Chunk(Objects.toString(title, ""), theme.font(10, Font.BOLD, theme.text)));
+        if (hasText(meta)){
+            paragraph.add(new Chunk("   " + meta, theme.font(9, Font.ITALIC, theme.text)));
+        }
+        document.add(paragraph);
+    }
+
+    private Paragraph body(String text, Theme theme){
+        Paragraph paragraph = new Paragraph(text, theme.font(10, Font.NORMAL, theme.text));
+        paragraph.setLeading(14);
+        return paragraph;
+    }
+
+    private Theme themeOf(Resume.Template template){
+        String themeName = template != null ? template.getTheme() : null;
+        List<String> palette = template != null && template.getColorPalette() != null ? template.getColorPalette() : List.of();
+
+//        the three templates map to the three base-14 font families so no font files are needed
+        int family = switch (Objects.toString(themeName, "01")){
+            case "02" -> Font.TIMES_ROMAN;
+            case "03" -> Font.COURIER;
+            default -> Font.HELVETICA;
+        };
+        Color accent = palette.size() > 0 ? parseColor(palette.get(0), DEFAULT_ACCENT) : DEFAULT_ACCENT;
+        Color text = palette.size() > 1 ? parseColor(palette.get(palette.size() - 1), DEFAULT_TEXT) : DEFAULT_TEXT;
+        return new Theme(family, accent, text);
+    }
+
+    private Color parseColor(String value, Color fallback){
+        if (value == null){
+            return fallback;
+        }
+        try{
+            return Color.decode(value.startsWith("#") ? value : "#" + value);
+        }catch (NumberFormatException e){
+            return fallback;
+        }
+    }
+
+    private String dates(String start, String end){
+        return join(" - ", start, end);
+    }
+
+    private String join(String separator, String... values){
+        List<String> parts = new ArrayList<>();
+        for (String value : values){
+            if (hasText(value)){
+                parts.add(value);
+            }
+        }
+        return String.join(separator, parts);
+    }
+
+    private boolean hasText(String value){
+        return value != null && !value.isBlank();
+    }
+
+    private boolean isEmpty(List<?> values){
+        return values == null || values.isEmpty();
+    }
+
+    private static class Theme {
+        private final int family;
+        private final Color accent;
+        private final Color text;
+
+        private Theme(int family, Color accent, Color text){
+            this.family = family;
+            this.accent = accent;
+            this.text = text;
+        }
+
+        private Font font(float size, int style, Color color){
+            return new Font(family, size, style, color);
+        }
+    }
+}
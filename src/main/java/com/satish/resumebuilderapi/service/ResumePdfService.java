@@ -0,0 +1,161 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumePdfService {
+
+    private final ResumeService resumeService;
+    private final ResumePdfRenderer resumePdfRenderer;
+    private final ResumeRevisionService resumeRevisionService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.threads:0}")
+    private int threads;
+
+    @Value("${app.pdf.queue-capacity:32}")
+    private int queueCapacity;
+
+    @Value("${app.pdf.timeout:10s}")
+    private Duration timeout;
+
+    @Value("${app.pdf.cache.max-weight-bytes:33554432}")
+    private long maxWeightBytes;
+
+    @Value("${app.pdf.cache.ttl:30m}")
+    private Duration ttl;
+
+    private ThreadPoolExecutor executor;
+    private ExecutorService monitoredExecutor;
+    private Cache<String, byte[]> renderedPdfs;
+
+    @PostConstruct
+    public void init(){
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "pdf-render-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        monitoredExecutor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "pdfRender");
+
+        renderedPdfs = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((String key, byte[] pdf) -> pdf.length)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, renderedPdfs, "resumePdfs");
+        log.info("PDF render pool started with {} threads, queue {}", poolSize, queueCapacity);
+    }
+
+    public RenderedPdf renderResume(String resumeId, Object principal){
+//        step 1: load through the resume cache, this also checks ownership
+        Resume resume = resumeService.getResumeById(resumeId, principal);
+
+//        step 2: serve from the render cache when the content has not changed
+        String contentHash = contentHash(resume);
+        byte[] cached = renderedPdfs.getIfPresent(contentHash);
+        if (cached != null){
+            return new RenderedPdf(cached, contentHash, fileName(resume));
+        }
+
+//        step 3: render on the bounded pool and remember the result
+        byte[] pdf = render(resume);
+        renderedPdfs.put(contentHash, pdf);
+        return new RenderedPdf(pdf, contentHash, fileName(resume));
+    }
+
+    private byte[] render(Resume resume){
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+            Future<byte[]> future;
+            try{
+                future = monitoredExecutor.submit(() -> resumePdfRenderer.render(resume));
+            }catch (RejectedExecutionException e){
+                meterRegistry.counter("resume.pdf.rejected").increment();
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }
+
+            try{
+                return future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }catch (TimeoutException e){
+                future.cancel(true);
+                throw new ServiceBusyException("Server is busy, please try again shortly");
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new ServiceBusyException("Request interrupted while rendering resume");
+            }catch (ExecutionException e){
+                throw new IllegalStateException("Resume PDF rendering failed", e.getCause());
+            }
+        }finally {
+            sample.stop(meterRegistry.timer("resume.pdf.render"));
+        }
+    }
+
+    private String contentHash(Resume resume){
+//        fields that change on every save without changing what the PDF looks like are left out
+        ObjectNode content = resumeRevisionService.contentOf(resume);
+//        the renderer version is part of the key so a layout change never serves stale output
+        content.put("rendererVersion", ResumePdfRenderer.VERSION);
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(objectMapper.writeValueAsString(content).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        }catch (NoSuchAlgorithmException | JsonProcessingException e){
+            throw new IllegalStateException("Could not hash resume content", e);
+        }
+    }
+
+    private String fileName(Resume resume){
+        String title = resume.getTitle() == null || resume.getTitle().isBlank() ? "resume" : resume.getTitle();
+        return title.replaceAll("[^A-Za-z0-9._-]+", "_") + ".pdf";
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdown();
+    }
+
+    public record RenderedPdf(byte[] bytes, String contentHash, String fileName){
+    }
+}
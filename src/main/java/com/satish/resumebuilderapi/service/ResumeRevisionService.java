@@ -0,0 +1,227 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.document.ResumeRevision;
+import com.satish.resumebuilderapi.dto.AuthResponse;
+import com.satish.resumebuilderapi.dto.ResumeRevisionSummary;
+import com.satish.resumebuilderapi.repository.ResumeRepository;
+import com.satish.resumebuilderapi.repository.ResumeRevisionRepository;
+import com.satish.resumebuilderapi.util.JsonPatch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ResumeRevisionService {
+
+//    fields that change on every save without changing the content, also left out of the PDF cache key
+    private static final List<String> NON_CONTENT_FIELDS = List.of("id", "_id", "userId", "thumbnailLink", "createAt", "updatedAt", "version");
+
+    private final ResumeRevisionRepository resumeRevisionRepository;
+    private final ResumeRepository resumeRepository;
+    private final AuthService authService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.revisions.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.revisions.snapshot-interval:20}")
+    private int snapshotInterval;
+
+    public ObjectNode contentOf(Resume resume){
+        ObjectNode content = objectMapper.valueToTree(resume);
+        content.remove(NON_CONTENT_FIELDS);
+        return content;
+    }
+
+    public void recordSnapshot(Resume resume){
+        if (!enabled){
+            return;
+        }
+        try{
+            save(snapshot(resume));
+        }catch (Exception e){
+            log.warn("Could not record revision {} of resume {}: {}", resume.getVersion(), resume.getId(), e.getMessage());
+        }
+    }
+
+    public void recordChange(ObjectNode before, Resume after){
+        if (!enabled){
+            return;
+        }
+        recordChange(before, after, after.getVersion() == null ? null : after.getVersion() - 1);
+    }
+
+    public void recordChange(ObjectNode before, Resume after, Long previousVersion){
+        if (!enabled){
+            return;
+        }
+        ArrayNode patch = JsonPatch.diff(before, contentOf(after));
+        record(after.getUserId(), after.getId(), previousVersion, after.getVersion(), patch);
+    }
+
+    public void recordPatch(String userId, String resumeId, Long version, ArrayNode patch){
+        if (!enabled){
+            return;
+        }
+        record(userId, resumeId, version == null ? null : version - 1, version, patch);
+    }
+
+    private void record(String userId, String resumeId, Long previousVersion, Long version, ArrayNode patch){
+        try{
+//            step 1: a diff only makes sense on top of the version it was taken against
+            Optional<ResumeRevision> latest = resumeRevisionRepository.findFirstByResumeIdOrderByVersionDesc(resumeId);
+            boolean chained = latest.isPresent()
+                    && previousVersion != null
+                    && previousVersion.equals(throughVersion(latest.get()));
+
+//            an unchanged save stores nothing, the latest revision just covers one more version
+            if (chained && patch.isEmpty()){
+                mongoTemplate.updateFirst(Query.query(Criteria.where("id").is(latest.get().getId())),
+                        new Update().max("throughVersion", version), ResumeRevision.class);
+                return;
+            }
+
+//            step 2: keep the chain short enough that reconstruction stays bounded
+            if (chained && latest.get().getDistance() + 1 < snapshotInterval){
+                String patchJson = objectMapper.writeValueAsString(patch);
+                save(ResumeRevision.builder()
+                        .resumeId(resumeId)
+                        .userId(userId)
+                        .version(version)
+                        .previousVersion(previousVersion)
+                        .type(ResumeRevision.DIFF)
+                        .distance(latest.get().getDistance() + 1)
+                        .patch(patchJson)
+                        .sizeBytes(patchJson.getBytes(StandardCharsets.UTF_8).length)
+                        .build());
+                return;
+            }
+
+//            step 3: no history, a gap or the interval is reached, store the full current state
+            resumeRepository.findByUserIdAndId(userId, resumeId)
+                    .ifPresent(resume -> save(snapshot(resume)));
+        }catch (Exception e){
+//            history is best effort, a missed revision only forces the next one to be a snapshot
+            log.warn("Could not record revision {} of resume {}: {}", version, resumeId, e.getMessage());
+        }
+    }
+
+    public List<ResumeRevisionSummary> getRevisions(String resumeId, Object principal, int limit){
+
+//        step 1: get the current profile
+        AuthResponse response = authService.getProfile(principal);
+
+//        step 2: read only the summary fields, newest first
+        Query query = Query.query(Criteria.where("resumeId").is(resumeId).and("userId").is(response.getId()))
+                .with(Sort.by(Sort.Order.desc("version")))
+                .limit(limit);
+        query.fields().include("version", "type", "sizeBytes", "createdAt");
+
+//        step 3: return the result
+        return mongoTemplate.find(query, ResumeRevision.class).stream()
+                .map(revision -> ResumeRevisionSummary.builder()
+                        .version(revision.getVersion())
+                        .type(revision.getType())
+                        .sizeBytes(revision.getSizeBytes())
+                        .createdAt(revision.getCreatedAt())
+                        .build())
+                .toList();
+    }
+
+    public Map<String, Object> getRevision(String resumeId, long version, Object principal){
+
+//        step 1: get the current profile
+        AuthResponse response = authService.getProfile(principal);
+
+//        step 2: start from the nearest snapshot at or before the requested version
+        ResumeRevision snapshot = resumeRevisionRepository
+                .findFirstByResumeIdAndUserIdAndTypeAndVersionLessThanEqualOrderByVersionDesc(resumeId, response.getId(), ResumeRevision.SNAPSHOT, version)
+                .orElseThrow(() -> new RuntimeException("Revision not found"));
+
+//        step 3: replay the diffs after it, at most snapshot-interval of them
+        Query diffs = Query.query(Criteria.where("resumeId").is(resumeId)
+                        .and("userId").is(response.getId())
+                        .and("type").is(ResumeRevision.DIFF)
+                        .and("version").gt(snapshot.getVersion()).lte(version))
+                .with(Sort.by(Sort.Order.asc("version")));
+        try{
+            JsonNode content = objectMapper.readTree(snapshot.getSnapshot());
+            long current = throughVersion(snapshot);
+            for (ResumeRevision diff : mongoTemplate.find(diffs, ResumeRevision.class)){
+                if (diff.getPreviousVersion() == null || diff.getPreviousVersion() != current){
+                    break;
+                }
+                content = JsonPatch.apply(content, objectMapper.readTree(diff.getPatch()));
+                current = throughVersion(diff);
+            }
+            if (current < version){
+                throw new RuntimeException("Revision not found");
+            }
+
+//            step 4: return the result
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("resumeId", resumeId);
+            result.put("version", version);
+            result.put("content", content);
+            return result;
+        }catch (JsonProcessingException e){
+            throw new IllegalStateException("Stored revision is corrupt", e);
+        }
+    }
+
+    public void deleteRevisions(String resumeId, String userId){
+        resumeRevisionRepository.deleteByResumeIdAndUserId(resumeId, userId);
+    }
+
+    private long throughVersion(ResumeRevision revision){
+        return revision.getThroughVersion() != null ? revision.getThroughVersion() : revision.getVersion();
+    }
+
+    private ResumeRevision snapshot(Resume resume){
+        try{
+            String snapshotJson = objectMapper.writeValueAsString(contentOf(resume));
+            return ResumeRevision.builder()
+                    .resumeId(resume.getId())
+                    .userId(resume.getUserId())
+                    .version(resume.getVersion())
+                    .type(ResumeRevision.SNAPSHOT)
+                    .distance(0)
+                    .snapshot(snapshotJson)
+                    .sizeBytes(snapshotJson.getBytes(StandardCharsets.UTF_8).length)
+                    .build();
+        }catch (JsonProcessingException e){
+            throw new IllegalStateException("Could not serialize resume " + resume.getId(), e);
+        }
+    }
+
+    private void save(ResumeRevision revision){
+        try{
+            resumeRevisionRepository.save(revision);
+        }catch (DuplicateKeyException e){
+//            a concurrent writer already recorded this version
+            log.debug("Revision {} of resume {} already recorded", revision.getVersion(), revision.getResumeId());
+        }
+    }
+}
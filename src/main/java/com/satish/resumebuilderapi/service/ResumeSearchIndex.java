@@ -0,0 +1,277 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.dto.ResumeSearchHit;
+import com.satish.resumebuilderapi.util.ResumeSection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ResumeSearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}+#]+");
+
+//    BM25 defaults
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+//    a title or skill hit says more about a resume than a word buried in a description
+    private static final int TITLE_WEIGHT = 3;
+    private static final int SKILL_WEIGHT = 2;
+    private static final int TEXT_WEIGHT = 1;
+
+    private static final Set<ResumeSection> INDEXED_SECTIONS = EnumSet.of(ResumeSection.TITLE, ResumeSection.PROFILE_INFO,
+            ResumeSection.WORK_EXPERIENCES, ResumeSection.SKILLS, ResumeSection.PROJECTS);
+
+//    all index() reads, a projection of these is enough to index a resume
+    public static final String[] INDEXED_FIELDS = {"userId", "title", "version", "profileInfo.summary", "workExperiences.role",
+            "workExperiences.company", "workExperiences.description", "skills.name", "projects.title", "projects.description"};
+
+    private final MongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.search.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    private final Map<String, UserIndex> users = new ConcurrentHashMap<>();
+//    resumes deleted while a rebuild runs, resumeId to userId, the rebuild may still stream their old copy
+    private final Map<String, String> tombstones = new ConcurrentHashMap<>();
+    private volatile boolean rebuilding;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup(){
+        if (!rebuildOnStartup){
+            return;
+        }
+//        runs off the startup thread, writes that race with it are settled by the version check in index()
+        Thread rebuild = new Thread(this::rebuild, "search-index-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    public void rebuild(){
+        long started = System.nanoTime();
+        Query query = new Query();
+        query.fields().include(INDEXED_FIELDS);
+        query.cursorBatchSize(500);
+
+        int count = 0;
+        rebuilding = true;
+        try (Stream<Resume> resumes = mongoTemplate.stream(query, Resume.class)){
+            Iterator<Resume> iterator = resumes.iterator();
+            while (iterator.hasNext()){
+                Resume resume = iterator.next();
+                if (!tombstones.containsKey(resume.getId())){
+                    index(resume);
+                }
+                count++;
+            }
+        }catch (Exception e){
+            log.error("Search index rebuild failed after {} resumes: {}", count, e.getMessage());
+            return;
+        }finally {
+//            replay the deletes, one may have landed between the tombstone check and index()
+            rebuilding = false;
+            tombstones.forEach((resumeId, userId) -> remove(userId, resumeId));
+            tombstones.clear();
+        }
+        log.info("Search index rebuilt with {} resumes for {} users in {} ms", count, users.size(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    public void index(Resume resume){
+        if (resume == null || resume.getUserId() == null || resume.getId() == null){
+            return;
+        }
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, resume.getTitle(), TITLE_WEIGHT);
+        if (resume.getProfileInfo() != null){
+            addTerms(terms, resume.getProfileInfo().getSummary(), TEXT_WEIGHT);
+        }
+        if (resume.getWorkExperiences() != null){
+            resume.getWorkExperiences().forEach(experience -> {
+                addTerms(terms, experience.getRole(), TEXT_WEIGHT);
+                addTerms(terms, experience.getCompany(), TEXT_WEIGHT);
+                addTerms(terms, experience.getDescription(), TEXT_WEIGHT);
+            });
+        }
+        if (resume.getSkills() != null){
+            resume.getSkills().forEach(skill -> addTerms(terms, skill.getName(), SKILL_WEIGHT));
+        }
+        if (resume.getProjects() != null){
+            resume.getProjects().forEach(project -> {
+                addTerms(terms, project.getTitle(), TEXT_WEIGHT);
+                addTerms(terms, project.getDescription(), TEXT_WEIGHT);
+            });
+        }
+        users.computeIfAbsent(resume.getUserId(), userId -> new UserIndex())
+                .put(resume.getId(), resume.getTitle(), resume.getVersion(), terms);
+    }
+
+    public boolean covers(ResumeSection section){
+        return INDEXED_SECTIONS.contains(section);
+    }
+
+    public void remove(String userId, String resumeId){
+        if (rebuilding){
+            tombstones.put(resumeId, userId);
+        }
+        UserIndex userIndex = users.get(userId);
+        if (userIndex != null){
+            userIndex.remove(resumeId);
+        }
+    }
+
+    public List<ResumeSearchHit> search(String userId, String queryText, int limit){
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+            UserIndex userIndex = users.get(userId);
+            List<String> tokens = tokenize(queryText);
+            if (userIndex == null || tokens.isEmpty()){
+                return List.of();
+            }
+            return userIndex.search(tokens, limit);
+        }finally {
+            sample.stop(meterRegistry.timer("resume.search"));
+        }
+    }
+
+    private void addTerms(Map<String, Integer> terms, String text, int weight){
+        for (String token : tokenize(text)){
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private List<String> tokenize(String text){
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()){
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))){
+            if (!token.isEmpty()){
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+//    one partition per user, a search never touches another user's postings
+    private static class UserIndex {
+        private final TreeMap<String, Map<String, Integer>> postings = new TreeMap<>();
+        private final Map<String, Doc> docs = new HashMap<>();
+        private long totalLength;
+
+        private synchronized void put(String resumeId, String title, Long version, Map<String, Integer> terms){
+            Doc existing = docs.get(resumeId);
+            if (existing != null){
+//                an older copy, e.g. from a rebuild that raced with a save, must not overwrite a newer one
+                if (existing.version != null && version != null && existing.version > version){
+                    return;
+                }
+                removeDoc(resumeId, existing);
+            }
+            int length = 0;
+            for (Map.Entry<String, Integer> term : terms.entrySet()){
+                postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(resumeId, term.getValue());
+                length += term.getValue();
+            }
+            docs.put(resumeId, new Doc(title, version, length, terms.keySet()));
+            totalLength += length;
+        }
+
+        private synchronized void remove(String resumeId){
+            Doc existing = docs.remove(resumeId);
+            if (existing != null){
+                removeDoc(resumeId, existing);
+            }
+        }
+
+        private void removeDoc(String resumeId, Doc doc){
+            for (String term : doc.terms){
+                Map<String, Integer> posting = postings.get(term);
+                if (posting != null){
+                    posting.remove(resumeId);
+                    if (posting.isEmpty()){
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= doc.length;
+        }
+
+        private synchronized List<ResumeSearchHit> search(List<String> tokens, int limit){
+            int documentCount = docs.size();
+            if (documentCount == 0){
+                return List.of();
+            }
+            double averageLength = Math.max(1.0, (double) totalLength / documentCount);
+            Map<String, Double> scores = new HashMap<>();
+
+            Set<String> queryTerms = new LinkedHashSet<>(tokens);
+            String last = tokens.get(tokens.size() - 1);
+            for (String queryTerm : queryTerms){
+//                the last word is matched as a prefix so results show up while the user is still typing
+                SortedMap<String, Map<String, Integer>> matches = queryTerm.equals(last) && queryTerm.length() >= 2
+                        ? postings.subMap(queryTerm, queryTerm + Character.MAX_VALUE)
+                        : exact(queryTerm);
+                for (Map.Entry<String, Map<String, Integer>> match : matches.entrySet()){
+                    Map<String, Integer> posting = match.getValue();
+                    double idf = Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                    for (Map.Entry<String, Integer> entry : posting.entrySet()){
+                        double tf = entry.getValue();
+                        double length = docs.get(entry.getKey()).length;
+                        double score = idf * (tf * (K1 + 1)) / (tf + K1 * (1 - B + B * length / averageLength));
+                        scores.merge(entry.getKey(), score, Double::sum);
+                    }
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+                    .limit(limit)
+                    .map(entry -> ResumeSearchHit.builder()
+                            .id(entry.getKey())
+                            .title(docs.get(entry.getKey()).title)
+                            .score(entry.getValue())
+                            .build())
+                    .toList();
+        }
+
+        private SortedMap<String, Map<String, Integer>> exact(String term){
+            Map<String, Integer> posting = postings.get(term);
+            TreeMap<String, Map<String, Integer>> match = new TreeMap<>();
+            if (posting != null){
+                match.put(term, posting);
+            }
+            return match;
+        }
+    }
+
+    private record Doc(String title, Long version, int length, Set<String> terms){
+    }
+}
@@ -1,17 +1,48 @@
 package com.satish.resumebuilderapi.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.satish.resumebuilderapi.document.Resume;
 import com.satish.resumebuilderapi.dto.AuthResponse;
 import com.satish.resumebuilderapi.dto.CreateResumeRequest;
+import com.satish.resumebuilderapi.dto.ResumeSearchHit;
+import com.satish.resumebuilderapi.dto.ResumeSummary;
+import com.satish.resumebuilderapi.dto.ResumeSummaryPage;
+import com.satish.resumebuilderapi.exception.PreconditionFailedException;
+import com.satish.resumebuilderapi.exception.ResourceNotFoundException;
 import com.satish.resumebuilderapi.repository.ResumeRepository;
+import com.satish.resumebuilderapi.util.JsonPatch;
+import com.satish.resumebuilderapi.util.ResumeSection;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.MergeOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -19,7 +50,15 @@ import java.util.List;
 public class ResumeService {
 
     private final ResumeRepository resumeRepository;
+    private final ResumeCache resumeCache;
     private final AuthService authService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final ThumbnailService thumbnailService;
+    private final ResumeRevisionService resumeRevisionService;
+    private final ResumeSearchIndex resumeSearchIndex;
+    private final AutosaveBuffer autosaveBuffer;
+    private final ImageStoreService imageStoreService;
 
     public Resume createResume(CreateResumeRequest request, Object principalObject) {
 //        step 1: create resume object
@@ -36,7 +75,11 @@ public class ResumeService {
         setDefaultResumeData(newResume);
 
 //        step 5: save the resume data
-        return resumeRepository.save(newResume);
+        Resume savedResume = resumeRepository.save(newResume);
+        thumbnailService.schedule(savedResume.getUserId(), savedResume.getId());
+        resumeRevisionService.recordSnapshot(savedResume);
+        resumeSearchIndex.index(savedResume);
+        return savedResume;
     }
 
     private void setDefaultResumeData(Resume newResume) {
@@ -56,66 +99,407 @@ public class ResumeService {
 //        step 1 : get the current profile
         AuthResponse response = authService.getProfile(principal);
 
-//        Step 2: call the repository
+//        Step 2: call the repository, after the buffered autosaves so the list shows them
+        autosaveBuffer.flushUser(response.getId());
         List<Resume> resumes = resumeRepository.findByUserIdOrderByUpdatedAtDesc(response.getId());
 
 //        step 3: return result
         return resumes;
     }
 
+    public ResumeSummaryPage getUserResumeSummaries(Object principal, String cursor, int limit) {
+
+//        step 1 : get the current profile
+        AuthResponse response = authService.getProfile(principal);
+
+//        step 2: keyset filter on (updatedAt, _id), newest first, after the buffered autosaves so titles and order are current
+        autosaveBuffer.flushUser(response.getId());
+        Criteria criteria = Criteria.where("userId").is(response.getId());
+        if (cursor != null && !cursor.isBlank()){
+            Cursor position = decodeCursor(cursor);
+//            documents without updatedAt sort after every dated one in descending order, so they form the last run
+            criteria = position.updatedAt() == null
+                    ? criteria.and("updatedAt").is(null).and("id").lt(position.id())
+                    : criteria.orOperator(
+                            Criteria.where("updatedAt").lt(position.updatedAt()),
+                            Criteria.where("updatedAt").is(position.updatedAt()).and("id").lt(position.id()),
+                            Criteria.where("updatedAt").is(null));
+        }
+        Query query = Query.query(criteria)
+                .with(Sort.by(Sort.Order.desc("updatedAt"), Sort.Order.desc("id")))
+                .limit(limit + 1);
+
+//        step 3: only the summary fields are read from Mongo
+        List<ResumeSummary> items = new ArrayList<>(mongoTemplate.query(Resume.class)
+                .as(ResumeSummary.class)
+                .matching(query)
+                .all());
+
+//        step 4: return the page with the cursor for the next one
+        String nextCursor = null;
+        if (items.size() > limit){
+            items = items.subList(0, limit);
+            ResumeSummary last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last.getUpdatedAt(), last.getId());
+        }
+//        imported resumes arrive without a thumbnail, render the ones that are actually looked at
+        for (ResumeSummary item : items){
+            if (item.getThumbnailLink() == null){
+                thumbnailService.schedule(response.getId(), item.getId());
+            }
+        }
+        return ResumeSummaryPage.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private String encodeCursor(LocalDateTime updatedAt, String id){
+        String position = (updatedAt == null ? "" : updatedAt.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String cursor){
+        try{
+            String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+            if (position.length != 2 || !ObjectId.isValid(position[1])){
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new Cursor(position[0].isEmpty() ? null : LocalDateTime.parse(position[0]), position[1]);
+        }catch (DateTimeParseException | IllegalArgumentException e){
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
     public Resume getResumeById(String resumeId, Object principal) {
 
 //        step 1: get the current profile
         AuthResponse response = authService.getProfile(principal);
 
-//        step 2: call the  repo finder method
-        Resume existingResume = resumeRepository.findByUserIdAndId(response.getId(),resumeId)
-                .orElseThrow(() -> new RuntimeException("Resume not found"));
+//        step 2: buffered autosaves first so readers see their own writes, then the cache, then the repo finder method
+        String userId = response.getId();
+        Resume existingResume = autosaveBuffer.get(userId, resumeId).orElseGet(() -> resumeCache.get(userId, resumeId,
+                () -> resumeRepository.findByUserIdAndId(userId, resumeId).orElse(null)));
+        if (existingResume == null){
+            throw new RuntimeException("Resume not found");
+        }
 
 //        step 3: return the result
         return existingResume;
     }
 
-    public Resume updateResume(String resumeId, Resume updatedData, Object principal) {
+    public Resume updateResume(String resumeId, Resume updatedData, Object principal, Long expectedVersion) {
 
 //        step 1: get the current profile
         AuthResponse response = authService.getProfile(principal);
+        if (autosaveBuffer.isEnabled()){
+            return bufferUpdate(response.getId(), resumeId, updatedData, expectedVersion);
+        }
 
 //        step 2: call the repository finder method
         Resume existingResume = resumeRepository.findByUserIdAndId(response.getId(),resumeId)
                 .orElseThrow(()-> new RuntimeException("Resume not found"));
+        if (expectedVersion != null && !expectedVersion.equals(existingResume.getVersion())){
+            throw new PreconditionFailedException("Resume version " + expectedVersion + " is no longer current");
+        }
+        ObjectNode previousContent = resumeRevisionService.contentOf(existingResume);
+        String previousThumbnail = existingResume.getThumbnailLink();
+        String previousProfileImage = profileImageOf(existingResume);
 
 //        step 3: update the new data
-        existingResume.setTitle(updatedData.getTitle());
-        existingResume.setThumbnailLink(updatedData.getThumbnailLink());
-        existingResume.setTemplate(updatedData.getTemplate());
-        existingResume.setProfileInfo(updatedData.getProfileInfo());
-        existingResume.setContactInfo(updatedData.getContactInfo());
-        existingResume.setWorkExperiences(updatedData.getWorkExperiences());
-        existingResume.setEducations(updatedData.getEducations());
-        existingResume.setSkills(updatedData.getSkills());
-        existingResume.setProjects(updatedData.getProjects());
-        existingResume.setLanguages(updatedData.getLanguages());
-        existingResume.setCertifications(updatedData.getCertifications());
-        existingResume.setInterests(updatedData.getInterests());
-
-//        step 4: save the details into database
-        resumeRepository.save(existingResume);
+        copyContent(updatedData, existingResume);
+
+//        step 4: save the details into database, a concurrent save fails on the version check
+        Resume savedResume = resumeRepository.save(existingResume);
+        resumeCache.put(savedResume);
+        thumbnailService.schedule(savedResume.getUserId(), resumeId);
+        resumeRevisionService.recordChange(previousContent, savedResume);
+        resumeSearchIndex.index(savedResume);
+        imageStoreService.replace(previousThumbnail, savedResume.getThumbnailLink());
+        imageStoreService.replace(previousProfileImage, profileImageOf(savedResume));
 
 //        step 5: return result
-        return existingResume;
+        return savedResume;
+
+    }
 
+    private Resume bufferUpdate(String userId, String resumeId, Resume updatedData, Long expectedVersion) {
+//        acknowledged from memory, AutosaveBuffer writes the latest state to Mongo once the editor goes quiet
+        Resume buffered = autosaveBuffer.update(userId, resumeId,
+                () -> resumeCache.get(userId, resumeId, () -> resumeRepository.findByUserIdAndId(userId, resumeId).orElse(null)),
+                current -> {
+                    if (expectedVersion != null && !expectedVersion.equals(current.getVersion())){
+                        throw new PreconditionFailedException("Resume version " + expectedVersion + " is no longer current");
+                    }
+//                    a copy, the current instance may be shared through the cache
+                    Resume next = objectMapper.convertValue(current, Resume.class);
+                    copyContent(updatedData, next);
+                    next.setVersion((current.getVersion() == null ? 0 : current.getVersion()) + 1);
+                    next.setUpdatedAt(LocalDateTime.now());
+                    return next;
+                });
+        resumeCache.put(buffered);
+        resumeSearchIndex.index(buffered);
+        return buffered;
+    }
+
+    private void copyContent(Resume updatedData, Resume target) {
+        target.setTitle(updatedData.getTitle());
+//        the server generates thumbnails now, only take the client's link when it sends one
+        if (updatedData.getThumbnailLink() != null){
+            target.setThumbnailLink(updatedData.getThumbnailLink());
+        }
+        target.setTemplate(updatedData.getTemplate());
+        target.setProfileInfo(updatedData.getProfileInfo());
+        target.setContactInfo(updatedData.getContactInfo());
+        target.setWorkExperiences(updatedData.getWorkExperiences());
+        target.setEducations(updatedData.getEducations());
+        target.setSkills(updatedData.getSkills());
+        target.setProjects(updatedData.getProjects());
+        target.setLanguages(updatedData.getLanguages());
+        target.setCertifications(updatedData.getCertifications());
+        target.setInterests(updatedData.getInterests());
+    }
+
+    private String profileImageOf(Resume resume) {
+        return resume.getProfileInfo() == null ? null : resume.getProfileInfo().getProfilePreviewUrl();
     }
 
     public void deleteResume(String resumeId, Object principal) {
 
 //        step 1: get the current profile
         AuthResponse response = authService.getProfile(principal);
+        autosaveBuffer.discard(response.getId(), resumeId);
 
 //        step 2: call the repository finder method
         Resume existingResume = resumeRepository.findByUserIdAndId(response.getId(), resumeId)
                 .orElseThrow(()-> new RuntimeException("Resume not found"));
 
         resumeRepository.delete(existingResume);
+        resumeCache.evict(response.getId(), resumeId);
+        thumbnailService.cancel(resumeId);
+        resumeRevisionService.deleteRevisions(resumeId, response.getId());
+        resumeSearchIndex.remove(response.getId(), resumeId);
+        imageStoreService.release(existingResume.getThumbnailLink());
+        imageStoreService.release(profileImageOf(existingResume));
+    }
+
+    public ResumeSummary duplicateResume(String resumeId, Object principal) {
+
+//        step 1: get the current profile
+        AuthResponse response = authService.getProfile(principal);
+        if (!ObjectId.isValid(resumeId)){
+            throw new RuntimeException("Resume not found");
+        }
+
+//        step 2: copy inside Mongo, the document never travels to the app, image URLs are reused as they are
+        autosaveBuffer.flush(response.getId(), resumeId);
+        ObjectId copyId = new ObjectId();
+        Aggregation copy = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("_id").is(new ObjectId(resumeId)).and("userId").is(response.getId())),
+                context -> new Document("$set", new Document()
+                        .append("_id", copyId)
+                        .append("title", new Document("$concat", List.of(new Document("$ifNull", List.of("$title", "")), " (Copy)")))
+                        .append("version", 0L)
+                        .append("createAt", "$$NOW")
+                        .append("updatedAt", "$$NOW")),
+                Aggregation.merge()
+                        .intoCollection(mongoTemplate.getCollectionName(Resume.class))
+                        .whenMatched(MergeOperation.WhenDocumentsMatch.failOnMatch())
+                        .whenDocumentsDontMatch(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                        .build());
+        mongoTemplate.aggregate(copy, Resume.class, Document.class);
+
+//        step 3: read back only what the summary and the search index need
+        Query query = Query.query(Criteria.where("id").is(copyId.toHexString()).and("userId").is(response.getId()));
+        query.fields().include("userId", "title", "thumbnailLink", "template", "updatedAt", "version", "profileInfo.summary",
+                "profileInfo.profilePreviewUrl", "workExperiences.role", "workExperiences.company", "workExperiences.description", "skills.name",
+                "projects.title", "projects.description");
+        Resume duplicate = mongoTemplate.findOne(query, Resume.class);
+        if (duplicate == null){
+            throw new RuntimeException("Resume not found");
+        }
+        resumeSearchIndex.index(duplicate);
+        imageStoreService.retain(duplicate.getThumbnailLink());
+        imageStoreService.retain(profileImageOf(duplicate));
+
+//        step 4: return the summary of the copy
+        return ResumeSummary.builder()
+                .id(duplicate.getId())
+                .title(duplicate.getTitle())
+                .thumbnailLink(duplicate.getThumbnailLink())
+                .template(duplicate.getTemplate())
+                .updatedAt(duplicate.getUpdatedAt())
+                .build();
+    }
+
+    public List<ResumeSearchHit> searchResumes(Object principal, String query, int limit) {
+
+//        step 1: get the current profile
+        AuthResponse response = authService.getProfile(principal);
+
+//        step 2: query the user's partition of the in-memory index, Mongo is not touched
+        return resumeSearchIndex.search(response.getId(), query, limit);
+    }
+
+    public Map<String, Object> patchSection(String resumeId, String sectionName, JsonNode value, Object principal, Long expectedVersion) {
+
+//        step 1: get the current profile and resolve the section
+        AuthResponse response = authService.getProfile(principal);
+        ResumeSection section = ResumeSection.fromField(sectionName);
+
+//        step 2: convert the payload to the section type
+        JavaType type = section.isList()
+                ? objectMapper.getTypeFactory().constructCollectionType(List.class, section.getElementType())
+                : objectMapper.getTypeFactory().constructType(section.getElementType());
+        Object sectionValue = convert(value, type);
+
+//        step 3: $set only this section
+        Update update = new Update().set(section.getField(), sectionValue);
+        ObjectNode op = JsonPatch.op(JsonPatch.REPLACE, JsonPatch.pointer(section.getField()), objectMapper.valueToTree(sectionValue));
+        return applyUpdate(resumeId, response.getId(), expectedVersion, null, update, section, op);
+    }
+
+    public Map<String, Object> addSectionItem(String resumeId, String sectionName, JsonNode item, Object principal, Long expectedVersion) {
+        AuthResponse response = authService.getProfile(principal);
+        ResumeSection section = listSection(sectionName);
+        Object element = convert(item, objectMapper.getTypeFactory().constructType(section.getElementType()));
+
+        Update update = new Update().push(section.getField(), element);
+        ObjectNode op = JsonPatch.op(JsonPatch.ADD, JsonPatch.pointer(section.getField(), "-"), objectMapper.valueToTree(element));
+        return applyUpdate(resumeId, response.getId(), expectedVersion, null, update, section, op);
+    }
+
+    public Map<String, Object> updateSectionItem(String resumeId, String sectionName, int index, JsonNode item, Object principal, Long expectedVersion) {
+        AuthResponse response = authService.getProfile(principal);
+        ResumeSection section = listSection(sectionName);
+        checkItemIndex(index);
+        Object element = convert(item, objectMapper.getTypeFactory().constructType(section.getElementType()));
+
+        String itemPath = section.getField() + "." + index;
+        Update update = new Update().set(itemPath, element);
+        ObjectNode op = JsonPatch.op(JsonPatch.REPLACE, JsonPatch.pointer(section.getField(), String.valueOf(index)), objectMapper.valueToTree(element));
+        return applyUpdate(resumeId, response.getId(), expectedVersion, Criteria.where(itemPath).exists(true), update, section, op);
+    }
+
+    public Map<String, Object> removeSectionItem(String resumeId, String sectionName, int index, Object principal, Long expectedVersion) {
+        AuthResponse response = authService.getProfile(principal);
+        ResumeSection section = listSection(sectionName);
+        checkItemIndex(index);
+
+//        $pull can only match by value, so drop the element by position with a pipeline update
+        String field = section.getField();
+        Document withoutItem = new Document("$map", new Document()
+                .append("input", new Document("$filter", new Document()
+                        .append("input", new Document("$range", List.of(0, new Document("$size", "$" + field))))
+                        .append("as", "i")
+                        .append("cond", new Document("$ne", List.of("$$i", index)))))
+                .append("as", "i")
+                .append("in", new Document("$arrayElemAt", List.of("$" + field, "$$i"))));
+        AggregationUpdate update = AggregationUpdate.from(List.of(
+                context -> new Document("$set", new Document(field, withoutItem)
+                        .append("updatedAt", "$$NOW")
+                        .append("version", new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L))))));
+
+        String itemPath = field + "." + index;
+        ObjectNode op = JsonPatch.op(JsonPatch.REMOVE, JsonPatch.pointer(field, String.valueOf(index)), null);
+        return applyUpdate(resumeId, response.getId(), expectedVersion, Criteria.where(itemPath).exists(true), update, section, op);
+    }
+
+    private ResumeSection listSection(String sectionName){
+        ResumeSection section = ResumeSection.fromField(sectionName);
+        if (!section.isList()){
+            throw new IllegalArgumentException("Resume section is not a list: " + sectionName);
+        }
+        return section;
+    }
+
+    private void checkItemIndex(int index){
+        if (index < 0){
+            throw new IllegalArgumentException("Item index must not be negative: " + index);
+        }
+    }
+
+    private Object convert(JsonNode value, JavaType type){
+        try{
+            return objectMapper.treeToValue(value, type);
+        }catch (JsonProcessingException | IllegalArgumentException e){
+            throw new IllegalArgumentException("Invalid value for resume section: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> applyUpdate(String resumeId, String userId, Long expectedVersion, Criteria extraCriteria, UpdateDefinition update, ResumeSection section, ObjectNode revisionOp){
+//        a PATCH applies on top of Mongo, so buffered autosaves of this resume go first
+        autosaveBuffer.flush(userId, resumeId);
+        Criteria criteria = Criteria.where("id").is(resumeId).and("userId").is(userId);
+        if (extraCriteria != null){
+            criteria = new Criteria().andOperator(criteria, extraCriteria);
+        }
+        Query query = Query.query(criteria);
+        if (expectedVersion != null){
+            query = Query.query(new Criteria().andOperator(criteria, Criteria.where("version").is(expectedVersion)));
+        }
+//        the old profile image comes back too, a profileInfo patch has to move its reference
+//        the thumbnail link is not touched by a patch and completes the ETag
+        query.fields().include("version", "profileInfo.profilePreviewUrl", "thumbnailLink");
+        boolean indexed = resumeSearchIndex.covers(section);
+        if (indexed){
+//            enough of the old document to replay the op on and index the result without reading it again
+            query.fields().include(ResumeSearchIndex.INDEXED_FIELDS);
+        }
+
+        if (update instanceof Update classicUpdate){
+            classicUpdate.currentDate("updatedAt").inc("version", 1);
+        }
+
+//        single conditional update filtered by owner and id, both updates bump the version by exactly one
+        Resume previous = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(false), Resume.class);
+        Long version = previous == null ? null : (previous.getVersion() == null ? 0L : previous.getVersion()) + 1;
+        resumeCache.evict(userId, resumeId, version);
+        if (previous == null){
+//            tell apart a missing resume, a missing item and a stale version
+            if (!mongoTemplate.exists(Query.query(Criteria.where("id").is(resumeId).and("userId").is(userId)), Resume.class)){
+                throw new ResourceNotFoundException("Resume not found");
+            }
+            if (extraCriteria != null && !mongoTemplate.exists(Query.query(criteria), Resume.class)){
+                throw new ResourceNotFoundException("Resume item not found");
+            }
+            if (expectedVersion == null){
+                throw new ResourceNotFoundException("Resume not found");
+            }
+            throw new PreconditionFailedException("Resume version " + expectedVersion + " is no longer current");
+        }
+        thumbnailService.schedule(userId, resumeId);
+        if (section == ResumeSection.PROFILE_INFO){
+//            the op carries the whole new profileInfo
+            imageStoreService.replace(profileImageOf(previous), revisionOp.path("value").path("profilePreviewUrl").textValue());
+        }
+//        the section op is already a minimal diff, store it as is instead of diffing whole documents
+        ArrayNode patch = objectMapper.createArrayNode().add(revisionOp);
+        resumeRevisionService.recordPatch(userId, resumeId, version, patch);
+        if (indexed){
+            reindex(previous, patch, version);
+        }
+        Map<String, Object> response = new HashMap<>();
+        response.put("message", "Resume updated successfully");
+        response.put("section", section.getField());
+        response.put("version", version);
+        response.put("thumbnailLink", previous.getThumbnailLink());
+        return response;
+    }
+
+//    the op landed on exactly the document that came back, so replaying it gives the indexed fields as stored
+    private void reindex(Resume previous, ArrayNode patch, Long version){
+        try{
+            Resume updated = objectMapper.treeToValue(JsonPatch.apply(objectMapper.valueToTree(previous), patch), Resume.class);
+            updated.setVersion(version);
+            resumeSearchIndex.index(updated);
+        }catch (JsonProcessingException | IllegalArgumentException e){
+            log.warn("Could not reindex resume {} from its patch, reading it back: {}", previous.getId(), e.getMessage());
+            resumeRepository.findByUserIdAndId(previous.getUserId(), previous.getId()).ifPresent(resumeSearchIndex::index);
+        }
+    }
+
+    private record Cursor(LocalDateTime updatedAt, String id){
     }
 }
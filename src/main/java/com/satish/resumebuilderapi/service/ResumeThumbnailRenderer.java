@@ -0,0 +1,178 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.document.Resume;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+@Component
+public class ResumeThumbnailRenderer {
+
+    private static final Color DEFAULT_ACCENT = new Color(0x63, 0x66, 0xf1);
+    private static final Color DEFAULT_TEXT = new Color(0x1f, 0x29, 0x37);
+
+    @Value("${app.thumbnails.width:420}")
+    private int width;
+
+    public byte[] render(Resume resume){
+//        A4 proportions, drawn straight from the resume content so no browser screenshot is needed
+        int height = (int) Math.round(width * 1.414);
+        int margin = width / 14;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try{
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+
+            List<String> palette = resume.getTemplate() != null && resume.getTemplate().getColorPalette() != null
+                    ? resume.getTemplate().getColorPalette() : List.of();
+            Color accent = palette.isEmpty() ? DEFAULT_ACCENT : parseColor(palette.get(0), DEFAULT_ACCENT);
+            Color text = palette.size() > 1 ? parseColor(palette.get(palette.size() - 1), DEFAULT_TEXT) : DEFAULT_TEXT;
+            String family = switch (resume.getTemplate() != null ? Objects.toString(resume.getTemplate().getTheme(), "01") : "01"){
+                case "02" -> Font.SERIF;
+                case "03" -> Font.MONOSPACED;
+                default -> Font.SANS_SERIF;
+            };
+
+            graphics.setColor(accent);
+            graphics.fillRect(0, 0, width, width / 60);
+
+            int y = margin + width / 20;
+            Resume.ProfileInfo profile = resume.getProfileInfo();
+            String name = profile != null && hasText(profile.getFullName()) ? profile.getFullName() : resume.getTitle();
+            y = drawLine(graphics, Objects.toString(name, ""), new Font(family, Font.BOLD, width / 18), accent, margin, y);
+            if (profile != null && hasText(profile.getDesignation())){
+                y = drawLine(graphics, profile.getDesignation(), new Font(family, Font.PLAIN, width / 34), text, margin, y);
+            }
+
+            Font headingFont = new Font(family, Font.BOLD, width / 38);
+            Font bodyFont = new Font(family, Font.PLAIN, width / 48);
+            for (Section section : sections(resume)){
+                if (y > height - margin){
+                    break;
+                }
+                y += width / 40;
+                y = drawLine(graphics, section.title.toUpperCase(), headingFont, accent, margin, y);
+                graphics.setStroke(new BasicStroke(1f));
+                graphics.drawLine(margin, y - width / 80, width - margin, y - width / 80);
+                for (String line : section.lines){
+                    if (y > height - margin){
+                        break;
+                    }
+                    y = drawWrapped(graphics, line, bodyFont, text, margin, y, width - 2 * margin);
+                }
+            }
+        }finally {
+            graphics.dispose();
+        }
+
+        try{
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 * 1024);
+            ImageIO.write(image, "png", outputStream);
+            return outputStream.toByteArray();
+        }catch (IOException e){
+            throw new UncheckedIOException("Failed to encode resume thumbnail", e);
+        }
+    }
+
+    private List<Section> sections(Resume resume){
+        List<Section> sections = new ArrayList<>();
+        if (resume.getProfileInfo() != null && hasText(resume.getProfileInfo().getSummary())){
+            sections.add(new Section("Summary", List.of(resume.getProfileInfo().getSummary())));
+        }
+        if (resume.getWorkExperiences() != null && !resume.getWorkExperiences().isEmpty()){
+            List<String> lines = new ArrayList<>();
+            resume.getWorkExperiences().forEach(experience -> lines.add(join(experience.getRole(), experience.getCompany())));
+            sections.add(new Section("Work Experience", lines));
+        }
+        if (resume.getEducations() != null && !resume.getEducations().isEmpty()){
+            List<String> lines = new ArrayList<>();
+            resume.getEducations().forEach(education -> lines.add(join(education.getDegree(), education.getInstitution())));
+            sections.add(new Section("Education", lines));
+        }
+        if (resume.getProjects() != null && !resume.getProjects().isEmpty()){
+            List<String> lines = new ArrayList<>();
+            resume.getProjects().forEach(project -> lines.add(Objects.toString(project.getTitle(), "")));
+            sections.add(new Section("Projects", lines));
+        }
+        if (resume.getSkills() != null && !resume.getSkills().isEmpty()){
+            List<String> names = new ArrayList<>();
+            resume.getSkills().forEach(skill -> {
+                if (hasText(skill.getName())){
+                    names.add(skill.getName());
+                }
+            });
+            sections.add(new Section("Skills", List.of(String.join(", ", names))));
+        }
+        return sections;
+    }
+
+    private int drawLine(Graphics2D graphics, String value, Font font, Color color, int x, int y){
+        graphics.setFont(font);
+        graphics.setColor(color);
+        FontMetrics metrics = graphics.getFontMetrics();
+        graphics.drawString(value, x, y + metrics.getAscent());
+        return y + metrics.getHeight();
+    }
+
+    private int drawWrapped(Graphics2D graphics, String value, Font font, Color color, int x, int y, int maxWidth){
+        graphics.setFont(font);
+        FontMetrics metrics = graphics.getFontMetrics();
+        StringBuilder line = new StringBuilder();
+        for (String word : value.split("\\s+")){
+            if (line.length() > 0 && metrics.stringWidth(line + " " + word) > maxWidth){
+                y = drawLine(graphics, line.toString(), font, color, x, y);
+                line.setLength(0);
+            }
+            if (line.length() > 0){
+                line.append(' ');
+            }
+            line.append(word);
+        }
+        if (line.length() > 0){
+            y = drawLine(graphics, line.toString(), font, color, x, y);
+        }
+        return y;
+    }
+
+    private Color parseColor(String value, Color fallback){
+        if (value == null){
+            return fallback;
+        }
+        try{
+            return Color.decode(value.startsWith("#") ? value : "#" + value);
+        }catch (NumberFormatException e){
+            return fallback;
+        }
+    }
+
+    private String join(String first, String second){
+        if (!hasText(first)){
+            return Objects.toString(second, "");
+        }
+        return hasText(second) ? first + " - " + second : first;
+    }
+
+    private boolean hasText(String value){
+        return value != null && !value.isBlank();
+    }
+
+    private record Section(String title, List<String> lines){
+    }
+}
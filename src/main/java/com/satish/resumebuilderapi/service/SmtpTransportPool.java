@@ -0,0 +1,210 @@
+package com.satish.resumebuilderapi.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SmtpTransportPool {
+
+    static final String SKIPPED = "Skipped by the caller";
+
+    private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.email.smtp-pool.size:4}")
+    private int size;
+
+    @Value("${app.email.smtp-pool.max-idle:60s}")
+    private Duration maxIdle;
+
+    @Value("${app.email.smtp-pool.borrow-timeout:10s}")
+    private Duration borrowTimeout;
+
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private Semaphore permits;
+    private JavaMailSenderImpl senderImpl;
+
+    @PostConstruct
+    public void init(){
+//        pooling needs the session and credentials, any other sender keeps the plain send path
+        if (mailSender instanceof JavaMailSenderImpl impl){
+            senderImpl = impl;
+        }
+        permits = new Semaphore(size, true);
+        meterRegistry.gauge("smtp.pool.idle", idleTransports, BlockingDeque::size);
+        meterRegistry.gauge("smtp.pool.active", this, pool -> pool.size - pool.permits.availablePermits());
+    }
+
+    public boolean isEnabled(){
+        return senderImpl != null;
+    }
+
+    public List<MessagingException> send(List<MimeMessage> messages) throws MessagingException {
+        return send(messages, index -> true);
+    }
+
+//    beforeSend runs right before each message goes out, returning false skips that message
+    public List<MessagingException> send(List<MimeMessage> messages, IntPredicate beforeSend) throws MessagingException {
+        List<MessagingException> results = new ArrayList<>(messages.size());
+        PooledTransport pooled = borrow();
+        MessagingException reconnectFailure = null;
+        boolean completed = false;
+        try{
+            for (int i = 0; i < messages.size(); i++){
+                MimeMessage message = messages.get(i);
+                if (reconnectFailure != null){
+                    results.add(reconnectFailure);
+                    continue;
+                }
+                if (!beforeSend.test(i)){
+                    results.add(new MessagingException(SKIPPED));
+                    continue;
+                }
+                if (pooled == null){
+//                    the session broke on an earlier message, a failed reconnect fails the rest but keeps what was sent
+                    try{
+                        pooled = connect();
+                    }catch (MessagingException e){
+                        reconnectFailure = e;
+                        results.add(e);
+                        continue;
+                    }
+                }
+                try{
+                    message.saveChanges();
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                    results.add(null);
+                }catch (SendFailedException e){
+//                    rejected recipients do not break the session
+                    results.add(e);
+                }catch (MessagingException e){
+                    results.add(e);
+                    close(pooled);
+                    pooled = null;
+                }
+            }
+            completed = true;
+        }finally {
+//            only a healthy session goes back to the pool, the permit is returned either way
+            if (!completed && pooled != null){
+                close(pooled);
+                pooled = null;
+            }
+            release(pooled);
+        }
+        meterRegistry.counter("smtp.pool.messages.sent").increment(results.stream().filter(r -> r == null).count());
+        return results;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        try{
+            if (!permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS)){
+                throw new MessagingException("Timed out waiting for a pooled SMTP connection");
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for a pooled SMTP connection");
+        }
+
+        try{
+            PooledTransport pooled;
+            while ((pooled = idleTransports.pollFirst()) != null){
+                if (pooled.transport.isConnected()){
+                    return pooled;
+                }
+                close(pooled);
+            }
+            return connect();
+        }catch (MessagingException | RuntimeException e){
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void release(PooledTransport pooled){
+        if (pooled != null){
+            pooled.lastUsed = System.currentTimeMillis();
+            idleTransports.offerFirst(pooled);
+        }
+        permits.release();
+    }
+
+    private PooledTransport connect() throws MessagingException {
+//        same fallback as JavaMailSenderImpl, the protocol is only set when configured explicitly
+        String protocol = senderImpl.getProtocol() != null ? senderImpl.getProtocol()
+                : senderImpl.getSession().getProperty("mail.transport.protocol");
+        Transport transport = senderImpl.getSession().getTransport(protocol != null ? protocol : JavaMailSenderImpl.DEFAULT_PROTOCOL);
+        String username = StringUtils.hasLength(senderImpl.getUsername()) ? senderImpl.getUsername() : null;
+        String password = StringUtils.hasLength(senderImpl.getPassword()) ? senderImpl.getPassword() : null;
+        transport.connect(senderImpl.getHost(), senderImpl.getPort(), username, password);
+        meterRegistry.counter("smtp.pool.connections.opened").increment();
+        return new PooledTransport(transport);
+    }
+
+    private void close(PooledTransport pooled){
+        try{
+            pooled.transport.close();
+        }catch (MessagingException e){
+            log.debug("Failed to close SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.email.smtp-pool.eviction-interval:30000}")
+    public void evictIdle(){
+        long cutoff = System.currentTimeMillis() - maxIdle.toMillis();
+        int count = idleTransports.size();
+        for (int i = 0; i < count; i++){
+            PooledTransport pooled = idleTransports.pollLast();
+            if (pooled == null){
+                break;
+            }
+//            isConnected() issues a NOOP, so this doubles as the health check
+            if (pooled.lastUsed < cutoff || !pooled.transport.isConnected()){
+                close(pooled);
+            }else {
+                idleTransports.offerFirst(pooled);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        PooledTransport pooled;
+        while ((pooled = idleTransports.pollFirst()) != null){
+            close(pooled);
+        }
+    }
+
+    private static class PooledTransport {
+        private final Transport transport;
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledTransport(Transport transport){
+            this.transport = transport;
+        }
+    }
+}
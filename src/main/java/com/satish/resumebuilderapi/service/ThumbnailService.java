@@ -0,0 +1,151 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.repository.ResumeRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ThumbnailService {
+
+    private final ResumeRepository resumeRepository;
+    private final ResumeThumbnailRenderer resumeThumbnailRenderer;
+    private final ResumeCache resumeCache;
+    private final MongoTemplate mongoTemplate;
+    private final ImageStoreService imageStoreService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.thumbnails.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.thumbnails.threads:1}")
+    private int threads;
+
+    @Value("${app.thumbnails.debounce:5s}")
+    private Duration debounce;
+
+    @Value("${app.thumbnails.max-delay:60s}")
+    private Duration maxDelay;
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private ScheduledThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init(){
+//        few low priority threads, thumbnails must never compete with request threads for CPU
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "thumbnails");
+        meterRegistry.gaugeMapSize("resume.thumbnail.pending", List.of(), pending);
+    }
+
+    public void schedule(String userId, String resumeId){
+        if (!enabled || userId == null || resumeId == null){
+            return;
+        }
+        long now = System.nanoTime();
+//        every edit pushes the render back by the debounce window, but never past max-delay from the first edit
+        pending.compute(resumeId, (id, existing) -> {
+            long firstRequestedAt = now;
+            if (existing != null){
+                existing.future.cancel(false);
+                firstRequestedAt = existing.firstRequestedAt;
+                meterRegistry.counter("resume.thumbnail.coalesced").increment();
+            }
+            long remaining = firstRequestedAt + maxDelay.toNanos() - now;
+            long delay = Math.max(0, Math.min(debounce.toNanos(), remaining));
+//            with no delay the task may start at once, its remove then waits on the map's lock for this key until compute returns
+            Pending next = new Pending(firstRequestedAt);
+            next.future = executor.schedule(() -> generate(userId, resumeId, next), delay, TimeUnit.NANOSECONDS);
+            return next;
+        });
+    }
+
+    public void cancel(String resumeId){
+        Pending removed = pending.remove(resumeId);
+        if (removed != null){
+            removed.future.cancel(false);
+        }
+    }
+
+    private void generate(String userId, String resumeId, Pending self){
+//        only drop our own entry, an edit during this render has already queued the next one
+        pending.remove(resumeId, self);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try{
+//            step 1: render from the latest stored content
+            Resume resume = resumeRepository.findByUserIdAndId(userId, resumeId).orElse(null);
+            if (resume == null){
+                return;
+            }
+            byte[] png = resumeThumbnailRenderer.render(resume);
+
+//            step 2: skip the upload when the resume moved on, the newer edit has its own render queued
+            Query unchanged = Query.query(Criteria.where("id").is(resumeId)
+                    .and("userId").is(userId)
+                    .and("version").is(resume.getVersion()));
+            if (!mongoTemplate.exists(unchanged, Resume.class)){
+                return;
+            }
+//            an unchanged render hashes the same and is answered without an upload
+            String thumbnailLink = imageStoreService.store(png);
+
+//            step 3: $set only the link, guarded by version and without bumping it so editors see no conflict
+            unchanged.fields().include("thumbnailLink");
+            Resume previous = mongoTemplate.findAndModify(unchanged, new Update().set("thumbnailLink", thumbnailLink),
+                    FindAndModifyOptions.options().returnNew(false), Resume.class);
+            if (previous != null){
+                imageStoreService.replace(previous.getThumbnailLink(), thumbnailLink);
+                resumeCache.evict(userId, resumeId);
+            }
+        }catch (Exception e){
+            log.warn("Thumbnail generation failed for resume {}: {}", resumeId, e.getMessage());
+            meterRegistry.counter("resume.thumbnail.failed").increment();
+        }finally {
+            sample.stop(meterRegistry.timer("resume.thumbnail.render"));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown(){
+        executor.shutdownNow();
+    }
+
+    private static class Pending {
+        private final long firstRequestedAt;
+        private ScheduledFuture<?> future;
+
+        private Pending(long firstRequestedAt){
+            this.firstRequestedAt = firstRequestedAt;
+        }
+    }
+}
@@ -8,11 +8,23 @@ public class AppConstants {
     public static final String VERIFY_EMAIL = "/verify-email";
     public static final String UPLOAD_PROFILE = "/upload-image";
     public static final String LOGIN = "/login";
+    public static final String REFRESH_TOKEN = "/refresh";
     public static final String RESEND_VERIFICATION = "/resend-verification";
     public static final String PROFILE = "/profile";
     public static final String RESUME = "/api/resumes";
     public static final String ID = "/{id}";
+    public static final String SEARCH = "/search";
+    public static final String IMPORT = "/import";
+    public static final String EXPORT = "/export";
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String PDF = "/{id}/pdf";
+    public static final String REVISIONS = "/{id}/revisions";
+    public static final String REVISION = "/{id}/revisions/{version}";
+    public static final String DUPLICATE = "/{id}/duplicate";
     public static final String UPLOAD_IMAGE = "/{id}/upload-images";
+    public static final String SECTION = "/{id}/{section}";
+    public static final String SECTION_ITEMS = "/{id}/{section}/items";
+    public static final String SECTION_ITEM = "/{id}/{section}/items/{index}";
     public static final String PREMIUM = "premium";
 
 }
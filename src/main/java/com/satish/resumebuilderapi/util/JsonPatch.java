@@ -0,0 +1,200 @@
+package com.satish.resumebuilderapi.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+//  a small subset of RFC 6902: add, remove and replace, enough to diff and replay resume content
+public final class JsonPatch {
+
+    public static final String ADD = "add";
+    public static final String REMOVE = "remove";
+    public static final String REPLACE = "replace";
+
+//    about 1 MB of table, a few hundred items on each side once the equal head and tail are cut
+    static final long MAX_LCS_CELLS = 250_000;
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private JsonPatch(){
+    }
+
+    public static ObjectNode op(String op, String path, JsonNode value){
+        ObjectNode node = NODES.objectNode();
+        node.put("op", op);
+        node.put("path", path);
+        if (value != null){
+            node.set("value", value);
+        }
+        return node;
+    }
+
+    public static String pointer(String... tokens){
+        StringBuilder path = new StringBuilder();
+        for (String token : tokens){
+            path.append('/').append(token.replace("~", "~0").replace("/", "~1"));
+        }
+        return path.toString();
+    }
+
+    public static ArrayNode diff(JsonNode source, JsonNode target){
+        ArrayNode ops = NODES.arrayNode();
+        diff("", source, target, ops);
+        return ops;
+    }
+
+    private static void diff(String path, JsonNode source, JsonNode target, ArrayNode ops){
+        if (source.equals(target)){
+            return;
+        }
+        if (source.isObject() && target.isObject()){
+            Iterator<String> sourceFields = source.fieldNames();
+            while (sourceFields.hasNext()){
+                String field = sourceFields.next();
+                if (!target.has(field)){
+                    ops.add(op(REMOVE, path + pointer(field), null));
+                }
+            }
+            Iterator<String> targetFields = target.fieldNames();
+            while (targetFields.hasNext()){
+                String field = targetFields.next();
+                if (source.has(field)){
+                    diff(path + pointer(field), source.get(field), target.get(field), ops);
+                }else {
+                    ops.add(op(ADD, path + pointer(field), target.get(field)));
+                }
+            }
+            return;
+        }
+        if (source.isArray() && target.isArray()){
+            diffArray(path, source, target, ops);
+            return;
+        }
+        ops.add(op(REPLACE, path, target));
+    }
+
+//    aligns the arrays on their longest common subsequence, so inserting or removing one item costs one op
+//    instead of a replace for every item after it, the equal head and tail are skipped before building the table
+    private static void diffArray(String path, JsonNode source, JsonNode target, ArrayNode ops){
+        int prefix = 0;
+        while (prefix < source.size() && prefix < target.size() && source.get(prefix).equals(target.get(prefix))){
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < source.size() - prefix && suffix < target.size() - prefix
+                && source.get(source.size() - 1 - suffix).equals(target.get(target.size() - 1 - suffix))){
+            suffix++;
+        }
+        int n = source.size() - prefix - suffix;
+        int m = target.size() - prefix - suffix;
+
+//        the table is quadratic, past the limit one replace is cheaper than the memory it would take
+        if ((long) (n + 1) * (m + 1) > MAX_LCS_CELLS){
+            ops.add(op(REPLACE, path, target));
+            return;
+        }
+
+        int[][] lcs = new int[n + 1][m + 1];
+        for (int i = n - 1; i >= 0; i--){
+            for (int j = m - 1; j >= 0; j--){
+                lcs[i][j] = source.get(prefix + i).equals(target.get(prefix + j))
+                        ? lcs[i + 1][j + 1] + 1
+                        : Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+            }
+        }
+
+//        index is the position in the array as it looks after the ops emitted so far
+        int i = 0;
+        int j = 0;
+        int index = prefix;
+        while (i < n || j < m){
+            if (i < n && j < m && source.get(prefix + i).equals(target.get(prefix + j))){
+                i++;
+                j++;
+                index++;
+            }else if (i < n && j < m && lcs[i + 1][j + 1] == lcs[i][j]){
+//                an edited item, diff into it rather than replacing it whole
+                diff(path + "/" + index, source.get(prefix + i), target.get(prefix + j), ops);
+                i++;
+                j++;
+                index++;
+            }else if (j < m && (i == n || lcs[i][j + 1] >= lcs[i + 1][j])){
+                ops.add(op(ADD, path + "/" + index, target.get(prefix + j)));
+                j++;
+                index++;
+            }else {
+                ops.add(op(REMOVE, path + "/" + index, null));
+                i++;
+            }
+        }
+    }
+
+    public static JsonNode apply(JsonNode document, JsonNode patch){
+        JsonNode result = document.deepCopy();
+        for (JsonNode operation : patch){
+            String op = operation.path("op").asText();
+            List<String> tokens = tokens(operation.path("path").asText());
+            JsonNode value = operation.get("value");
+            if (tokens.isEmpty()){
+                result = value == null ? NODES.nullNode() : value.deepCopy();
+                continue;
+            }
+
+            JsonNode parent = result;
+            String last = tokens.get(tokens.size() - 1);
+            for (int i = 0; i < tokens.size() - 1; i++){
+                String token = tokens.get(i);
+                JsonNode child = parent.isArray() ? parent.get(Integer.parseInt(token)) : parent.get(token);
+//                appending to a list that was never set, the same way $push creates the array
+                if ((child == null || child.isNull()) && ADD.equals(op) && "-".equals(last)
+                        && i == tokens.size() - 2 && parent instanceof ObjectNode objectParent){
+                    child = objectParent.putArray(token);
+                }
+                if (child == null){
+                    throw new IllegalArgumentException("Patch path does not exist: " + operation.path("path").asText());
+                }
+                parent = child;
+            }
+
+            if (parent instanceof ObjectNode objectNode){
+                if (REMOVE.equals(op)){
+                    objectNode.remove(last);
+                }else {
+                    objectNode.set(last, value == null ? NODES.nullNode() : value.deepCopy());
+                }
+            }else if (parent instanceof ArrayNode arrayNode){
+                if (ADD.equals(op)){
+                    JsonNode element = value == null ? NODES.nullNode() : value.deepCopy();
+                    if ("-".equals(last)){
+                        arrayNode.add(element);
+                    }else {
+                        arrayNode.insert(Integer.parseInt(last), element);
+                    }
+                }else if (REMOVE.equals(op)){
+                    arrayNode.remove(Integer.parseInt(last));
+                }else {
+                    arrayNode.set(Integer.parseInt(last), value == null ? NODES.nullNode() : value.deepCopy());
+                }
+            }else {
+                throw new IllegalArgumentException("Patch path does not exist: " + operation.path("path").asText());
+            }
+        }
+        return result;
+    }
+
+    private static List<String> tokens(String path){
+        List<String> tokens = new ArrayList<>();
+        if (path.isEmpty()){
+            return tokens;
+        }
+        for (String token : path.substring(1).split("/", -1)){
+            tokens.add(token.replace("~1", "/").replace("~0", "~"));
+        }
+        return tokens;
+    }
+}
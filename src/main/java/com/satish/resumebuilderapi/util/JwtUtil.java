@@ -1,75 +1,156 @@
 package com.satish.resumebuilderapi.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.satish.resumebuilderapi.document.User;
+import com.satish.resumebuilderapi.security.UserPrincipal;
+import com.satish.resumebuilderapi.security.VerifiedToken;
 import io.jsonwebtoken.Claims;
-import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
+    private static final String TOKEN_TYPE = "tokenType";
+    private static final String EMAIL = "email";
+    private static final String NAME = "name";
+    private static final String PROFILE_IMAGE = "profileImage";
+    private static final String SUBSCRIPTION_PLAN = "subscriptionPlan";
+    private static final String EMAIL_VERIFIED = "emailVerified";
+
     @Value("${jwt.secret}")
     private String jwtSecret ;
 
     @Value("${jwt.expiration}")
     private long jwtExpiration;
 
-    public String generateToken(String userId){
+    @Value("${jwt.access-expiration:900000}")
+    private long accessExpiration;
+
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedCacheMaxSize;
+
+    private Key signingKey;
+    private JwtParser jwtParser;
+    private Cache<String, VerifiedToken> verifiedTokens;
+
+    @PostConstruct
+    public void init(){
+        signingKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(jwtSecret));
+        jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+
+//        entries live until the token itself expires, so a cache hit never outlives the token
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheMaxSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+                        long remainingMillis = value.getExpiration().getTime() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    public String generateToken(User user){
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + accessExpiration);
+
+        return Jwts.builder()
+                .setSubject(user.getId())
+                .claim(TOKEN_TYPE, VerifiedToken.ACCESS)
+                .claim(EMAIL, user.getEmail())
+                .claim(NAME, user.getName())
+                .claim(PROFILE_IMAGE, user.getProfileImage())
+                .claim(SUBSCRIPTION_PLAN, user.getSubscriptionPlan())
+                .claim(EMAIL_VERIFIED, user.isEmailVerified())
+                .setIssuedAt(now)
+                .setExpiration(expiryDate)
+                .signWith(signingKey)
+                .compact();
+    }
+
+    public String generateRefreshToken(String userId){
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpiration);
 
         return Jwts.builder()
                 .setSubject(userId)
+                .claim(TOKEN_TYPE, VerifiedToken.REFRESH)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(getSigningKey())
+                .signWith(signingKey)
                 .compact();
     }
 
-    private Key getSigningKey() {
-        byte[] decodedKey = Base64.getDecoder().decode(jwtSecret);
-        return Keys.hmacShaKeyFor(decodedKey);
-    }
+    public VerifiedToken verifyToken(String token){
+        String digest = digest(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+        if (cached != null && !cached.isExpired()){
+            return cached;
+        }
 
-    public String getUserIdFromToken(String token) {
-        Claims claims = Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+//        signature and expiry are both checked by the parser, it throws JwtException on failure
+        Claims claims = jwtParser.parseClaimsJws(token).getBody();
+        VerifiedToken verifiedToken = new VerifiedToken(
+                claims.getSubject(),
+                claims.getIssuedAt(),
+                claims.getExpiration(),
+                claims.get(TOKEN_TYPE, String.class),
+                toPrincipal(claims));
 
-        return claims.getSubject();
+        if (verifiedToken.getExpiration() != null){
+            verifiedTokens.put(digest, verifiedToken);
+        }
+        return verifiedToken;
     }
 
-    public boolean validateToken(String token){
-        try{
-            Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token);
-            return true;
-        }catch (JwtException | IllegalArgumentException e){
-            return false;
+    private UserPrincipal toPrincipal(Claims claims){
+        if (!claims.containsKey(EMAIL)){
+            return null;
         }
+        return UserPrincipal.builder()
+                .id(claims.getSubject())
+                .email(claims.get(EMAIL, String.class))
+                .name(claims.get(NAME, String.class))
+                .profileImage(claims.get(PROFILE_IMAGE, String.class))
+                .subscriptionPlan(claims.get(SUBSCRIPTION_PLAN, String.class))
+                .emailVerified(Boolean.TRUE.equals(claims.get(EMAIL_VERIFIED, Boolean.class)))
+                .build();
     }
 
-    public boolean isTokenExpired(String token){
+    private String digest(String token){
         try{
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(getSigningKey())
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
-            return claims.getExpiration().before(new Date());
-        }catch (JwtException | IllegalArgumentException e){
-            return true;
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        }catch (NoSuchAlgorithmException e){
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 }
@@ -0,0 +1,49 @@
+package com.satish.resumebuilderapi.util;
+
+import com.satish.resumebuilderapi.document.Resume;
+
+import java.util.Arrays;
+
+public enum ResumeSection {
+
+    TITLE("title", String.class, false),
+    TEMPLATE("template", Resume.Template.class, false),
+    PROFILE_INFO("profileInfo", Resume.ProfileInfo.class, false),
+    CONTACT_INFO("contactInfo", Resume.ContactInfo.class, false),
+    WORK_EXPERIENCES("workExperiences", Resume.WorkExperience.class, true),
+    EDUCATIONS("educations", Resume.Education.class, true),
+    SKILLS("skills", Resume.Skill.class, true),
+    PROJECTS("projects", Resume.Project.class, true),
+    CERTIFICATIONS("certifications", Resume.Certification.class, true),
+    LANGUAGES("languages", Resume.Language.class, true),
+    INTERESTS("interests", String.class, true);
+
+    private final String field;
+    private final Class<?> elementType;
+    private final boolean list;
+
+    ResumeSection(String field, Class<?> elementType, boolean list){
+        this.field = field;
+        this.elementType = elementType;
+        this.list = list;
+    }
+
+    public String getField(){
+        return field;
+    }
+
+    public Class<?> getElementType(){
+        return elementType;
+    }
+
+    public boolean isList(){
+        return list;
+    }
+
+    public static ResumeSection fromField(String field){
+        return Arrays.stream(values())
+                .filter(section -> section.field.equals(field))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown resume section: " + field));
+    }
+}
@@ -0,0 +1,301 @@
+package com.satish.resumebuilderapi.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.mongodb.bulk.BulkWriteResult;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.exception.ServiceBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AutosaveBufferTest {
+
+    private static final String USER = "user-1";
+    private static final String RESUME = "resume-1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ResumeCache resumeCache;
+
+    @Mock
+    private ResumeRevisionService resumeRevisionService;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Mock
+    private ImageStoreService imageStoreService;
+
+    @Mock
+    private ResumeSearchIndex resumeSearchIndex;
+
+    @Mock
+    private BulkOperations bulk;
+
+    private AutosaveBuffer autosaveBuffer;
+
+    @BeforeEach
+    void setUp(){
+        autosaveBuffer = new AutosaveBuffer(mongoTemplate, resumeCache, resumeRevisionService, thumbnailService,
+                imageStoreService, resumeSearchIndex, meterRegistry);
+        ReflectionTestUtils.setField(autosaveBuffer, "enabled", true);
+        ReflectionTestUtils.setField(autosaveBuffer, "quietPeriod", Duration.ZERO);
+        ReflectionTestUtils.setField(autosaveBuffer, "maxDelay", Duration.ofSeconds(15));
+        ReflectionTestUtils.setField(autosaveBuffer, "batchSize", 200);
+        ReflectionTestUtils.setField(autosaveBuffer, "drainRetryDelay", Duration.ZERO);
+        autosaveBuffer.init();
+
+        when(resumeRevisionService.contentOf(any())).thenAnswer(invocation -> {
+            Resume resume = invocation.getArgument(0);
+            return JsonNodeFactory.instance.objectNode().put("title", resume.getTitle());
+        });
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Resume.class)).thenReturn(bulk);
+        when(bulk.updateOne(any(Query.class), any(Update.class))).thenReturn(bulk);
+    }
+
+    @Test
+    void editsAreCoalescedIntoOneWrite(){
+        AtomicInteger loads = new AtomicInteger();
+        autosaveBuffer.update(USER, RESUME, () -> {
+            loads.incrementAndGet();
+            return resume("v1", 1L);
+        }, edit("v2"));
+        Resume latest = autosaveBuffer.update(USER, RESUME, () -> resume("unused", 0L), edit("v3"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(latest.getVersion()).isEqualTo(3L);
+        assertThat(autosaveBuffer.get(USER, RESUME)).contains(latest);
+
+        when(bulk.execute()).thenReturn(result(1));
+        autosaveBuffer.flush(USER, RESUME);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(query.capture(), update.capture());
+        assertThat(query.getValue().getQueryObject().get("version")).isEqualTo(1L);
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("title")).isEqualTo("v3");
+        assertThat(autosaveBuffer.get(USER, RESUME)).isEmpty();
+        verify(resumeRevisionService).recordChange(any(), eq(latest), eq(1L));
+        verify(thumbnailService).schedule(USER, RESUME);
+        verify(mongoTemplate, never()).find(any(Query.class), eq(Resume.class));
+    }
+
+    @Test
+    void editBufferedWhileLoadingIsBuiltOnInsteadOfTheLoad(){
+//        the racing save runs inside the loader, it would be a recursive update if the load still ran inside compute
+        Resume latest = autosaveBuffer.update(USER, RESUME, () -> {
+            autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+            return resume("stale", 1L);
+        }, edit("v3"));
+
+        assertThat(latest.getTitle()).isEqualTo("v3");
+        assertThat(latest.getVersion()).isEqualTo(3L);
+
+        when(bulk.execute()).thenReturn(result(1));
+        autosaveBuffer.flush(USER, RESUME);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(bulk).updateOne(query.capture(), any(Update.class));
+        assertThat(query.getValue().getQueryObject().get("version")).isEqualTo(1L);
+    }
+
+    @Test
+    void flushUserWritesOnlyThatUsersResumes(){
+        autosaveBuffer.update(USER, "resume-1", () -> resume("a", 1L), edit("a2"));
+        autosaveBuffer.update(USER, "resume-2", () -> resume("b", 1L), edit("b2"));
+        autosaveBuffer.update("user-2", "resume-3", () -> resume("c", 1L), edit("c2"));
+        when(bulk.execute()).thenReturn(result(1));
+
+        autosaveBuffer.flushUser(USER);
+
+        verify(bulk, times(2)).execute();
+        assertThat(autosaveBuffer.get(USER, "resume-1")).isEmpty();
+        assertThat(autosaveBuffer.get(USER, "resume-2")).isEmpty();
+        assertThat(autosaveBuffer.get("user-2", "resume-3")).isPresent();
+    }
+
+    @Test
+    void editDuringFlushBuildsOnTheFlushedVersion(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        when(bulk.execute()).thenAnswer(invocation -> {
+            autosaveBuffer.update(USER, RESUME, () -> resume("unused", 0L), edit("v3"));
+            return result(1);
+        });
+        autosaveBuffer.flush(USER, RESUME);
+
+        when(bulk.execute()).thenReturn(result(1));
+        autosaveBuffer.flush(USER, RESUME);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(bulk, times(2)).updateOne(query.capture(), any(Update.class));
+        assertThat(query.getAllValues().get(1).getQueryObject().get("version")).isEqualTo(2L);
+        assertThat(autosaveBuffer.get(USER, RESUME)).isEmpty();
+    }
+
+    @Test
+    void conflictingWriteIsDroppedAndIndexedFromMongo(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        Resume stored = resume("written elsewhere", 2L);
+        when(bulk.execute()).thenReturn(result(0));
+        when(mongoTemplate.find(any(Query.class), eq(Resume.class))).thenReturn(List.of(stored));
+
+        autosaveBuffer.flush(USER, RESUME);
+
+        assertThat(autosaveBuffer.get(USER, RESUME)).isEmpty();
+        verify(resumeCache).evict(USER, RESUME);
+        verify(resumeSearchIndex).index(stored);
+        verify(resumeRevisionService, never()).recordChange(any(), any(), any());
+        assertThat(meterRegistry.counter("resume.autosave.conflicts").count()).isEqualTo(1);
+    }
+
+    @Test
+    void conflictOnADeletedResumeRemovesItFromTheIndex(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        when(bulk.execute()).thenReturn(result(0));
+        when(mongoTemplate.find(any(Query.class), eq(Resume.class))).thenReturn(List.of());
+
+        autosaveBuffer.flush(USER, RESUME);
+
+        verify(resumeSearchIndex).remove(USER, RESUME);
+        assertThat(autosaveBuffer.get(USER, RESUME)).isEmpty();
+    }
+
+    @Test
+    void writeThatLandedIsKeptWhenAnotherInTheBatchMissed(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        autosaveBuffer.update(USER, "resume-2", () -> resume("v1", 1L), edit("v2"));
+        Resume landed = resume("v2", 2L);
+        landed.setId(RESUME);
+        when(bulk.execute()).thenReturn(result(1));
+        when(mongoTemplate.find(any(Query.class), eq(Resume.class))).thenReturn(List.of(landed));
+
+        autosaveBuffer.drain();
+
+        verify(resumeRevisionService).recordChange(any(), any(), eq(1L));
+        verify(resumeSearchIndex).remove(USER, "resume-2");
+        assertThat(meterRegistry.counter("resume.autosave.conflicts").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedFlushKeepsTheEditAndTellsTheCaller(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        when(bulk.execute()).thenThrow(new RuntimeException("primary stepped down"));
+
+        assertThatThrownBy(() -> autosaveBuffer.flush(USER, RESUME)).isInstanceOf(ServiceBusyException.class);
+        assertThat(autosaveBuffer.get(USER, RESUME)).isPresent();
+    }
+
+    @Test
+    void drainRetriesAFailedBatch(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        when(bulk.execute())
+                .thenThrow(new RuntimeException("timeout"))
+                .thenThrow(new RuntimeException("timeout"))
+                .thenReturn(result(1));
+
+        autosaveBuffer.drain();
+
+        verify(bulk, times(3)).execute();
+        assertThat(autosaveBuffer.get(USER, RESUME)).isEmpty();
+        assertThat(meterRegistry.find("resume.autosave.lost").counter()).isNull();
+    }
+
+    @Test
+    void drainCountsWhatItCouldNotWrite(){
+        autosaveBuffer.update(USER, RESUME, () -> resume("v1", 1L), edit("v2"));
+        when(bulk.execute()).thenThrow(new RuntimeException("timeout"));
+
+        autosaveBuffer.drain();
+
+        verify(bulk, times(3)).execute();
+        assertThat(meterRegistry.counter("resume.autosave.lost").count()).isEqualTo(1);
+    }
+
+    @Test
+    void clientThumbnailIsWrittenAndRetained(){
+        Resume persisted = resume("v1", 1L);
+        persisted.setThumbnailLink("https://img/server.png");
+        autosaveBuffer.update(USER, RESUME, () -> persisted, current -> {
+            Resume next = edit("v2").apply(current);
+            next.setThumbnailLink("https://img/client.png");
+            return next;
+        });
+        when(bulk.execute()).thenReturn(result(1));
+
+        autosaveBuffer.flush(USER, RESUME);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(any(Query.class), update.capture());
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class).get("thumbnailLink"))
+                .isEqualTo("https://img/client.png");
+        verify(imageStoreService).replace("https://img/server.png", "https://img/client.png");
+    }
+
+    @Test
+    void serverThumbnailIsNotOverwritten(){
+        Resume persisted = resume("v1", 1L);
+        persisted.setThumbnailLink("https://img/server.png");
+        autosaveBuffer.update(USER, RESUME, () -> persisted, edit("v2"));
+        when(bulk.execute()).thenReturn(result(1));
+
+        autosaveBuffer.flush(USER, RESUME);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk).updateOne(any(Query.class), update.capture());
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).doesNotContainKey("thumbnailLink");
+    }
+
+    private Resume resume(String title, Long version){
+        Resume resume = new Resume();
+        resume.setId(RESUME);
+        resume.setUserId(USER);
+        resume.setTitle(title);
+        resume.setVersion(version);
+        return resume;
+    }
+
+//    mirrors ResumeService, every save works on a copy and bumps the version
+    private UnaryOperator<Resume> edit(String title){
+        return current -> {
+            Resume next = objectMapper.convertValue(current, Resume.class);
+            next.setTitle(title);
+            next.setVersion(current.getVersion() + 1);
+            return next;
+        };
+    }
+
+    private BulkWriteResult result(int matched){
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of());
+    }
+}
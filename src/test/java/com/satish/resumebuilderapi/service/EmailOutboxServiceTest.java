@@ -0,0 +1,229 @@
+package com.satish.resumebuilderapi.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.satish.resumebuilderapi.document.EmailOutbox;
+import com.satish.resumebuilderapi.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EmailOutboxServiceTest {
+
+    @Mock
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private EmailService emailService;
+
+    private EmailOutboxService emailOutboxService;
+
+    @BeforeEach
+    void setUp(){
+        emailOutboxService = new EmailOutboxService(emailOutboxRepository, mongoTemplate, emailService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emailOutboxService, "batchSize", 2);
+        ReflectionTestUtils.setField(emailOutboxService, "maxAttempts", 3);
+        ReflectionTestUtils.setField(emailOutboxService, "lease", Duration.ofMinutes(2));
+        ReflectionTestUtils.setField(emailOutboxService, "initialBackoff", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(emailOutboxService, "maxBackoff", Duration.ofMinutes(30));
+    }
+
+    @Test
+    void claimTakesDueAndAbandonedRowsUpToTheBatchSize(){
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(EmailOutbox.class)))
+                .thenReturn(email("a", 1), email("b", 1), email("c", 1));
+
+        List<EmailOutbox> batch = ReflectionTestUtils.invokeMethod(emailOutboxService, "claimBatch");
+
+        assertThat(batch).extracting(EmailOutbox::getId).containsExactly("a", "b");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).findAndModify(query.capture(), update.capture(), any(FindAndModifyOptions.class), eq(EmailOutbox.class));
+        assertThat(query.getValue().getQueryObject().toString()).contains("nextAttemptAt", "lockedUntil", EmailOutbox.SENDING, "attempts=Document{{$lt=3}}");
+        Document claim = update.getValue().getUpdateObject();
+        assertThat(claim.get("$set", Document.class)).containsEntry("status", EmailOutbox.SENDING).containsKey("lockedUntil");
+        assertThat(claim.get("$inc", Document.class)).containsEntry("attempts", 1);
+    }
+
+    @Test
+    void rowsOutOfAttemptsAreFailedInsteadOfClaimed(){
+        when(mongoTemplate.updateMulti(any(Query.class), any(UpdateDefinition.class), eq(EmailOutbox.class)))
+                .thenReturn(UpdateResult.acknowledged(2, 2L, null));
+
+        ReflectionTestUtils.invokeMethod(emailOutboxService, "failExhausted");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(EmailOutbox.class));
+        assertThat(query.getValue().getQueryObject().toString()).contains("attempts=Document{{$gte=3}}");
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("status", EmailOutbox.FAILED);
+    }
+
+    @Test
+    void claimStopsWhenNothingIsDue(){
+        List<EmailOutbox> batch = ReflectionTestUtils.invokeMethod(emailOutboxService, "claimBatch");
+        assertThat(batch).isEmpty();
+    }
+
+    @Test
+    void leaseIsRenewedBeforeEachSendAndGuardsTheResult() throws Exception {
+        stubLease(true);
+        stubSend((MessagingException) null);
+
+        deliver(email("a", 2));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(EmailOutbox.class));
+        assertThat(update.getAllValues().get(0).getUpdateObject().get("$set", Document.class)).containsOnlyKeys("lockedUntil");
+        assertThat(update.getAllValues().get(1).getUpdateObject().get("$set", Document.class)).containsEntry("status", EmailOutbox.SENT);
+//        both writes only match this worker's claim
+        for (Query guard : query.getAllValues()){
+            assertThat(guard.getQueryObject()).containsEntry("id", "a").containsEntry("status", EmailOutbox.SENDING).containsEntry("attempts", 2);
+        }
+    }
+
+    @Test
+    void lostLeaseSkipsTheSend() throws Exception {
+        stubLease(false);
+        List<Boolean> sent = stubSend((MessagingException) null);
+
+        deliver(email("a", 1));
+
+        assertThat(sent).containsExactly(false);
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(EmailOutbox.class));
+    }
+
+    @Test
+    void claimedBatchGoesOutInOneSendWithALeaseCheckPerMessage() throws Exception {
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(EmailOutbox.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null), UpdateResult.acknowledged(0, 0L, null),
+                        UpdateResult.acknowledged(1, 1L, null));
+        List<Boolean> sent = stubSend((MessagingException) null);
+
+        deliver(email("a", 1), email("b", 1), email("c", 1));
+
+        verify(emailService, times(1)).sendBatch(anyList(), any(IntPredicate.class));
+        assertThat(sent).containsExactly(true, false, true);
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(5)).updateFirst(query.capture(), update.capture(), eq(EmailOutbox.class));
+        assertThat(query.getAllValues().subList(3, 5)).extracting(guard -> guard.getQueryObject().get("id")).containsExactly("a", "c");
+        assertThat(update.getAllValues().subList(3, 5))
+                .allSatisfy(sentUpdate -> assertThat(sentUpdate.getUpdateObject().get("$set", Document.class)).containsEntry("status", EmailOutbox.SENT));
+    }
+
+    @Test
+    void noSessionFailsTheWholeBatchForRetry() throws Exception {
+        when(emailService.createHtmlMessage(anyString(), anyString(), anyString())).thenReturn(mock(MimeMessage.class));
+        when(emailService.sendBatch(anyList(), any(IntPredicate.class)))
+                .thenThrow(new MessagingException("Timed out waiting for a pooled SMTP connection"));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(EmailOutbox.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        deliver(email("a", 1), email("b", 1));
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(EmailOutbox.class));
+        assertThat(update.getAllValues())
+                .allSatisfy(failed -> assertThat(failed.getUpdateObject().get("$set", Document.class)).containsEntry("status", EmailOutbox.PENDING));
+    }
+
+    @Test
+    void failedSendIsRetriedWithBackoff() throws Exception {
+        stubLease(true);
+        stubSend(new MessagingException("mailbox unavailable"));
+
+        deliver(email("a", 1));
+
+        Document set = lastUpdate().get("$set", Document.class);
+        assertThat(set).containsEntry("status", EmailOutbox.PENDING).containsEntry("lastError", "mailbox unavailable").containsKey("nextAttemptAt");
+    }
+
+    @Test
+    void lastAttemptFailsForGood() throws Exception {
+        stubLease(true);
+        stubSend(new MessagingException("mailbox unavailable"));
+
+        deliver(email("a", 3));
+
+        Document set = lastUpdate().get("$set", Document.class);
+        assertThat(set).containsEntry("status", EmailOutbox.FAILED).doesNotContainKey("nextAttemptAt");
+    }
+
+    private void deliver(EmailOutbox... emails){
+        ReflectionTestUtils.invokeMethod(emailOutboxService, "deliver", Arrays.asList(emails));
+    }
+
+    private void stubLease(boolean held){
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(EmailOutbox.class)))
+                .thenReturn(UpdateResult.acknowledged(held ? 1 : 0, held ? 1L : 0L, null));
+    }
+
+//    behaves like the pool, asking before each message and reporting a skip for the ones refused
+    private List<Boolean> stubSend(MessagingException failure) throws Exception {
+        List<Boolean> sent = new ArrayList<>();
+        when(emailService.createHtmlMessage(anyString(), anyString(), anyString())).thenReturn(mock(MimeMessage.class));
+        when(emailService.sendBatch(anyList(), any(IntPredicate.class))).thenAnswer(invocation -> {
+            List<MimeMessage> messages = invocation.getArgument(0);
+            IntPredicate beforeSend = invocation.getArgument(1);
+            List<MessagingException> results = new ArrayList<>();
+            for (int i = 0; i < messages.size(); i++){
+                boolean send = beforeSend.test(i);
+                sent.add(send);
+                results.add(send ? failure : new MessagingException("Skipped by the caller"));
+            }
+            return results;
+        });
+        return sent;
+    }
+
+    private Document lastUpdate(){
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(EmailOutbox.class));
+        return update.getValue().getUpdateObject();
+    }
+
+    private EmailOutbox email(String id, int attempts){
+        return EmailOutbox.builder()
+                .id(id)
+                .recipient("someone@example.com")
+                .subject("Verify your email")
+                .htmlContent("<p>hi</p>")
+                .status(EmailOutbox.SENDING)
+                .attempts(attempts)
+                .build();
+    }
+}
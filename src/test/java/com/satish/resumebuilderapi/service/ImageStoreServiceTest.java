@@ -0,0 +1,241 @@
+package com.satish.resumebuilderapi.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import com.mongodb.client.result.UpdateResult;
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.document.StoredImage;
+import com.satish.resumebuilderapi.document.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ImageStoreServiceTest {
+
+    private static final String URL = "https://res.cloudinary.com/demo/image/upload/v1/images/abc.png";
+
+    @Mock
+    private Cloudinary cloudinary;
+
+    @Mock
+    private Uploader uploader;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private ImageNormalizer imageNormalizer;
+
+    private ImageStoreService imageStoreService;
+
+    @BeforeEach
+    void setUp(){
+        imageStoreService = new ImageStoreService(cloudinary, mongoTemplate, imageNormalizer, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(imageStoreService, "releaseGrace", Duration.ofHours(1));
+        ReflectionTestUtils.setField(imageStoreService, "releaseBatchSize", 100);
+    }
+
+    @Test
+    void knownImageIsAnsweredWithoutUpload() throws Exception {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(StoredImage.class)))
+                .thenReturn(stored(0));
+
+        assertThat(imageStoreService.store(new byte[]{1, 2, 3})).isEqualTo(URL);
+
+        verify(uploader, never()).upload(any(), anyMap());
+    }
+
+    @Test
+    void newImageStartsUnreferenced() throws Exception {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class), eq(StoredImage.class)))
+                .thenReturn(null, stored(0));
+        when(imageNormalizer.normalize(any(byte[].class))).thenReturn(Optional.empty());
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.upload(any(), anyMap())).thenReturn(Map.of("secure_url", URL, "public_id", "images/abc"));
+
+        assertThat(imageStoreService.store(new byte[]{1, 2, 3})).isEqualTo(URL);
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2))
+                .findAndModify(any(Query.class), update.capture(), any(FindAndModifyOptions.class), eq(StoredImage.class));
+        Document upsert = update.getValue().getUpdateObject();
+        assertThat(upsert.get("$setOnInsert", Document.class)).containsEntry("refCount", 0L);
+        assertThat(upsert.get("$unset", Document.class)).containsKey("releaseClaim");
+    }
+
+    @Test
+    void replaceRetainsTheNewImageAndReleasesTheOld(){
+        imageStoreService.replace("old", "new");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(StoredImage.class));
+        assertThat(query.getAllValues().get(0).getQueryObject()).containsEntry("url", "new");
+        assertThat(update.getAllValues().get(0).getUpdateObject().get("$inc", Document.class)).containsEntry("refCount", 1);
+        assertThat(query.getAllValues().get(1).getQueryObject()).containsEntry("url", "old").containsKey("refCount");
+        assertThat(update.getAllValues().get(1).getUpdateObject().get("$inc", Document.class)).containsEntry("refCount", -1);
+    }
+
+    @Test
+    void replaceWithTheSameImageDoesNothing(){
+        imageStoreService.replace(URL, URL);
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(StoredImage.class));
+    }
+
+    @Test
+    void retainAllSendsOneUpdatePerDistinctImageInOneBulk(){
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StoredImage.class)).thenReturn(bulk);
+
+        imageStoreService.retainAll(Arrays.asList("a", null, "b", "a"));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(bulk, times(2)).updateOne(query.capture(), update.capture());
+        verify(bulk).execute();
+        for (int i = 0; i < 2; i++){
+            Object url = query.getAllValues().get(i).getQueryObject().get("url");
+            assertThat(update.getAllValues().get(i).getUpdateObject().get("$inc", Document.class))
+                    .containsEntry("refCount", "a".equals(url) ? 2L : 1L);
+        }
+    }
+
+    @Test
+    void retainAllWithoutImagesDoesNothing(){
+        imageStoreService.retainAll(Arrays.asList(null, null));
+        verify(mongoTemplate, never()).bulkOps(any(BulkOperations.BulkMode.class), eq(StoredImage.class));
+    }
+
+    @Test
+    void imageStillShownOnAResumeIsRecountedNotDestroyed() throws Exception {
+        stubCandidates(stored(0));
+        when(mongoTemplate.count(any(Query.class), eq(Resume.class))).thenReturn(2L);
+
+        imageStoreService.releaseUnused();
+
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate).updateFirst(any(Query.class), update.capture(), eq(StoredImage.class));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("refCount", 2L);
+        verify(uploader, never()).destroy(anyString(), anyMap());
+    }
+
+    @Test
+    void imageUsedAsAProfilePictureIsKept() throws Exception {
+        stubCandidates(stored(0));
+        when(mongoTemplate.count(any(Query.class), eq(Resume.class))).thenReturn(0L);
+        when(mongoTemplate.count(any(Query.class), eq(User.class))).thenReturn(1L);
+
+        imageStoreService.releaseUnused();
+
+        verify(uploader, never()).destroy(anyString(), anyMap());
+    }
+
+    @Test
+    void unusedImageIsDestroyedBeforeItsRecordIsDropped() throws Exception {
+        StoredImage image = stored(0);
+        stubCandidates(image);
+        stubClaim(true);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StoredImage.class))).thenReturn(image);
+
+        imageStoreService.releaseUnused();
+
+        InOrder order = inOrder(mongoTemplate, uploader);
+        order.verify(mongoTemplate).updateFirst(any(Query.class), any(UpdateDefinition.class), eq(StoredImage.class));
+        order.verify(uploader).destroy(eq("images/abc"), anyMap());
+        ArgumentCaptor<Query> remove = ArgumentCaptor.forClass(Query.class);
+        order.verify(mongoTemplate).findAndRemove(remove.capture(), eq(StoredImage.class));
+        assertThat(remove.getValue().getQueryObject()).containsKey("releaseClaim");
+        verify(mongoTemplate, never()).remove(any(Query.class), eq(StoredImage.class));
+    }
+
+    @Test
+    void reuseDuringTheDestroyDropsTheRecordSoTheNextUploadRecreatesIt() throws Exception {
+        stubCandidates(stored(0));
+        stubClaim(true);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StoredImage.class))).thenReturn(null);
+
+        imageStoreService.releaseUnused();
+
+        verify(uploader).destroy(eq("images/abc"), anyMap());
+        verify(mongoTemplate).remove(any(Query.class), eq(StoredImage.class));
+    }
+
+    @Test
+    void failedDestroyKeepsTheRecord() throws Exception {
+        stubCandidates(stored(0));
+        stubClaim(true);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.destroy(anyString(), anyMap())).thenThrow(new RuntimeException("rate limited"));
+
+        imageStoreService.releaseUnused();
+
+        verify(mongoTemplate, never()).findAndRemove(any(Query.class), eq(StoredImage.class));
+        ArgumentCaptor<UpdateDefinition> update = ArgumentCaptor.forClass(UpdateDefinition.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), update.capture(), eq(StoredImage.class));
+        assertThat(update.getValue().getUpdateObject().get("$unset", Document.class)).containsKey("releaseClaim");
+    }
+
+    @Test
+    void claimLostToAConcurrentReuseSkipsTheImage() throws Exception {
+        stubCandidates(stored(0));
+        stubClaim(false);
+
+        imageStoreService.releaseUnused();
+
+        verify(uploader, never()).destroy(anyString(), anyMap());
+    }
+
+    private void stubCandidates(StoredImage... images){
+        when(mongoTemplate.find(any(Query.class), eq(StoredImage.class))).thenReturn(List.of(images));
+    }
+
+    private void stubClaim(boolean claimed){
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(StoredImage.class)))
+                .thenReturn(UpdateResult.acknowledged(claimed ? 1 : 0, claimed ? 1L : 0L, null));
+    }
+
+    private StoredImage stored(long refCount){
+        return StoredImage.builder()
+                .id("abc")
+                .url(URL)
+                .publicId("images/abc")
+                .refCount(refCount)
+                .lastUsedAt(LocalDateTime.now().minusDays(1))
+                .build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.satish.resumebuilderapi.service;
+
+import com.satish.resumebuilderapi.document.Resume;
+import com.satish.resumebuilderapi.dto.AuthResponse;
+import com.satish.resumebuilderapi.dto.ResumeSummary;
+import com.satish.resumebuilderapi.dto.ResumeSummaryPage;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ExecutableFindOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ResumeServicePaginationTest {
+
+    private static final Object PRINCIPAL = new Object();
+
+    @Mock
+    private AuthService authService;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private AutosaveBuffer autosaveBuffer;
+
+    @Mock
+    private ThumbnailService thumbnailService;
+
+    @Mock
+    private ExecutableFindOperation.ExecutableFind<Resume> find;
+
+    @Mock
+    private ExecutableFindOperation.FindWithQuery<ResumeSummary> findSummaries;
+
+    @Mock
+    private ExecutableFindOperation.TerminatingFind<ResumeSummary> terminatingFind;
+
+    @InjectMocks
+    private ResumeService resumeService;
+
+    @BeforeEach
+    void setUp(){
+        when(authService.getProfile(PRINCIPAL)).thenReturn(AuthResponse.builder().id("user-1").build());
+    }
+
+    @Test
+    void fullPageReturnsCursorOfLastItem(){
+        LocalDateTime now = LocalDateTime.of(2026, 1, 10, 12, 0);
+        List<ResumeSummary> rows = List.of(summary(now), summary(now.minusHours(1)), summary(now.minusHours(2)));
+        ArgumentCaptor<Query> query = stubFind(rows);
+
+        ResumeSummaryPage page = resumeService.getUserResumeSummaries(PRINCIPAL, null, 2);
+
+        assertThat(page.getItems()).containsExactlyElementsOf(rows.subList(0, 2));
+        assertThat(decode(page.getNextCursor())).isEqualTo(rows.get(1).getUpdatedAt() + "|" + rows.get(1).getId());
+        assertThat(query.getValue().getLimit()).isEqualTo(3);
+        assertThat(query.getValue().getSortObject().toJson()).contains("updatedAt", "id");
+//        only the listed resumes without a thumbnail get one rendered
+        verify(thumbnailService).schedule("user-1", rows.get(0).getId());
+        verify(thumbnailService).schedule("user-1", rows.get(1).getId());
+        verifyNoMoreInteractions(thumbnailService);
+    }
+
+    @Test
+    void lastPageHasNoCursor(){
+        stubFind(List.of(summary(LocalDateTime.now())));
+
+        ResumeSummaryPage page = resumeService.getUserResumeSummaries(PRINCIPAL, null, 2);
+
+        assertThat(page.getItems()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void datedCursorContinuesAfterThePositionAndIncludesUndatedResumes(){
+        ArgumentCaptor<Query> query = stubFind(List.of());
+        String id = new ObjectId().toHexString();
+
+        resumeService.getUserResumeSummaries(PRINCIPAL, encode("2026-01-10T12:00|" + id), 2);
+
+        String filter = query.getValue().getQueryObject().toString();
+        assertThat(filter).contains("$or", "$lt", id);
+        assertThat(filter).contains("updatedAt=null");
+    }
+
+    @Test
+    void undatedCursorStaysInTheUndatedRun(){
+        List<ResumeSummary> rows = new ArrayList<>(List.of(summary(null), summary(null)));
+        ArgumentCaptor<Query> query = stubFind(rows);
+        String id = new ObjectId().toHexString();
+
+        ResumeSummaryPage page = resumeService.getUserResumeSummaries(PRINCIPAL, encode("|" + id), 1);
+
+        String filter = query.getValue().getQueryObject().toString();
+        assertThat(filter).doesNotContain("$or").contains("updatedAt=null", "$lt", id);
+        assertThat(decode(page.getNextCursor())).isEqualTo("|" + rows.get(0).getId());
+    }
+
+    @Test
+    void malformedCursorsAreRejected(){
+        String id = new ObjectId().toHexString();
+        for (String cursor : List.of("%%%", encode("no-separator"), encode("2026-01-10T12:00|not-an-id"),
+                encode("yesterday|" + id), encode("2026-01-10T12:00|" + id + "|extra"))){
+            assertThatThrownBy(() -> resumeService.getUserResumeSummaries(PRINCIPAL, cursor, 2))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Invalid cursor");
+        }
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private ArgumentCaptor<Query> stubFind(List<ResumeSummary> rows){
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        when(mongoTemplate.query(Resume.class)).thenReturn(find);
+        when(find.as(ResumeSummary.class)).thenReturn(findSummaries);
+        when(findSummaries.matching(query.capture())).thenReturn(terminatingFind);
+        when(terminatingFind.all()).thenReturn(rows);
+        return query;
+    }
+
+    private ResumeSummary summary(LocalDateTime updatedAt){
+        return ResumeSummary.builder().id(new ObjectId().toHexString()).updatedAt(updatedAt).build();
+    }
+
+    private String encode(String position){
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decode(String cursor){
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+}
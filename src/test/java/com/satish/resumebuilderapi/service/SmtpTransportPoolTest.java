@@ -0,0 +1,119 @@
+package com.satish.resumebuilderapi.service;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+class SmtpTransportPoolTest {
+
+    private static final int MESSAGES = 200;
+//    a fresh connection per message is slow enough that a smaller sample gives a stable rate
+    private static final int UNPOOLED_MESSAGES = 50;
+
+    @RegisterExtension
+    static final GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private JavaMailSenderImpl mailSender;
+    private SmtpTransportPool pool;
+
+    @BeforeEach
+    void setUp(){
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(greenMail.getSmtp().getPort());
+        pool = new SmtpTransportPool(mailSender, meterRegistry);
+        ReflectionTestUtils.setField(pool, "size", 2);
+        ReflectionTestUtils.setField(pool, "maxIdle", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(pool, "borrowTimeout", Duration.ofSeconds(5));
+        pool.init();
+    }
+
+    @Test
+    void batchGoesOutOverOneSession() throws Exception {
+        List<MessagingException> results = pool.send(messages(MESSAGES));
+
+        assertThat(results).hasSize(MESSAGES).containsOnlyNulls();
+        assertThat(greenMail.getReceivedMessages()).hasSize(MESSAGES);
+        assertThat(meterRegistry.counter("smtp.pool.connections.opened").count()).isEqualTo(1);
+    }
+
+    @Test
+    void sessionIsReusedAcrossBatches() throws Exception {
+        pool.send(messages(1));
+        pool.send(messages(1));
+
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+        assertThat(meterRegistry.counter("smtp.pool.connections.opened").count()).isEqualTo(1);
+    }
+
+    @Test
+    void refusedMessagesAreSkipped() throws Exception {
+        List<MessagingException> results = pool.send(messages(3), index -> index != 1);
+
+        assertThat(results.get(0)).isNull();
+        assertThat(results.get(1)).hasMessage(SmtpTransportPool.SKIPPED);
+        assertThat(results.get(2)).isNull();
+        assertThat(greenMail.getReceivedMessages()).hasSize(2);
+    }
+
+    @Test
+    void pooledSessionOutpacesAConnectionPerMessage() throws Exception {
+//        warm up class loading and the JIT on both paths before timing
+        pool.send(messages(20));
+        for (MimeMessage message : messages(20)){
+            mailSender.send(message);
+        }
+
+        List<MimeMessage> perConnection = messages(UNPOOLED_MESSAGES);
+        long start = System.nanoTime();
+        for (MimeMessage message : perConnection){
+            mailSender.send(message);
+        }
+        double perConnectionRate = UNPOOLED_MESSAGES / seconds(start);
+
+        List<MimeMessage> pooled = messages(MESSAGES);
+        start = System.nanoTime();
+        pool.send(pooled);
+        double pooledRate = MESSAGES / seconds(start);
+
+        log.info("SMTP throughput against a local server: pooled {} msg/s, connection per message {} msg/s ({}x)",
+                Math.round(pooledRate), Math.round(perConnectionRate), String.format("%.1f", pooledRate / perConnectionRate));
+        assertThat(greenMail.getReceivedMessages()).hasSize(MESSAGES + UNPOOLED_MESSAGES + 40);
+        assertThat(pooledRate).isGreaterThan(perConnectionRate);
+    }
+
+    private List<MimeMessage> messages(int count) throws MessagingException {
+        List<MimeMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++){
+            MimeMessage message = mailSender.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, false);
+            helper.setFrom("noreply@example.com");
+            helper.setTo("user" + i + "@example.com");
+            helper.setSubject("Verify your email");
+            helper.setText("<p>Click the link to verify</p>", true);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private double seconds(long start){
+        return (System.nanoTime() - start) / 1_000_000_000.0;
+    }
+}
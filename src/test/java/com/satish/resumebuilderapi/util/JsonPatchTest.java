@@ -0,0 +1,179 @@
+package com.satish.resumebuilderapi.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonPatchTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void diffOfEqualDocumentsIsEmpty() throws Exception {
+        JsonNode resume = json("{\"title\":\"CV\",\"skills\":[{\"name\":\"Java\"}]}");
+        assertThat(JsonPatch.diff(resume, resume.deepCopy())).isEmpty();
+    }
+
+    @Test
+    void insertingOneItemIsOneOp() throws Exception {
+        JsonNode source = json("{\"skills\":[{\"name\":\"Java\"},{\"name\":\"Go\"},{\"name\":\"SQL\"}]}");
+        JsonNode target = json("{\"skills\":[{\"name\":\"Kotlin\"},{\"name\":\"Java\"},{\"name\":\"Go\"},{\"name\":\"SQL\"}]}");
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).hasSize(1);
+        assertThat(ops.get(0).path("op").asText()).isEqualTo(JsonPatch.ADD);
+        assertThat(ops.get(0).path("path").asText()).isEqualTo("/skills/0");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void removingOneItemIsOneOp() throws Exception {
+        JsonNode source = json("{\"skills\":[\"Java\",\"Go\",\"SQL\"]}");
+        JsonNode target = json("{\"skills\":[\"Java\",\"SQL\"]}");
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).hasSize(1);
+        assertThat(ops.get(0).path("op").asText()).isEqualTo(JsonPatch.REMOVE);
+        assertThat(ops.get(0).path("path").asText()).isEqualTo("/skills/1");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void editedItemIsDiffedInPlace() throws Exception {
+        JsonNode source = json("{\"workExperiences\":[{\"company\":\"A\",\"role\":\"Dev\"},{\"company\":\"B\",\"role\":\"Dev\"}]}");
+        JsonNode target = json("{\"workExperiences\":[{\"company\":\"A\",\"role\":\"Lead\"},{\"company\":\"B\",\"role\":\"Dev\"}]}");
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).hasSize(1);
+        assertThat(ops.get(0).path("path").asText()).isEqualTo("/workExperiences/0/role");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void fieldNamesAreEscapedInPointers() throws Exception {
+        JsonNode source = json("{\"a/b\":1,\"c~d\":2}");
+        JsonNode target = json("{\"a/b\":3}");
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).extracting(op -> op.path("path").asText()).containsExactlyInAnyOrder("/a~1b", "/c~0d");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void applyDoesNotChangeTheSource() throws Exception {
+        JsonNode source = json("{\"skills\":[\"Java\"]}");
+        JsonPatch.apply(source, JsonPatch.diff(source, json("{\"skills\":[]}")));
+        assertThat(source).isEqualTo(json("{\"skills\":[\"Java\"]}"));
+    }
+
+    @Test
+    void appendCreatesAMissingList() throws Exception {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode()
+                .add(JsonPatch.op(JsonPatch.ADD, JsonPatch.pointer("interests", "-"), JsonNodeFactory.instance.textNode("Chess")));
+        assertThat(JsonPatch.apply(json("{}"), patch)).isEqualTo(json("{\"interests\":[\"Chess\"]}"));
+    }
+
+    @Test
+    void applyRejectsAMissingPath() throws Exception {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode()
+                .add(JsonPatch.op(JsonPatch.REPLACE, "/profileInfo/summary", JsonNodeFactory.instance.textNode("x")));
+        assertThatThrownBy(() -> JsonPatch.apply(json("{}"), patch)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void oneInsertIntoALargeListIsStillOneOp(){
+        ObjectNode source = interests(20_000, 0);
+        ObjectNode target = source.deepCopy();
+        ((ArrayNode) target.get("interests")).insert(10_000, "Chess");
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).hasSize(1);
+        assertThat(ops.get(0).path("path").asText()).isEqualTo("/interests/10000");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void largeRewrittenListIsReplacedWhole(){
+        ObjectNode source = interests(20_000, 0);
+        ObjectNode target = interests(20_000, 1);
+
+        ArrayNode ops = JsonPatch.diff(source, target);
+
+        assertThat(ops).hasSize(1);
+        assertThat(ops.get(0).path("op").asText()).isEqualTo(JsonPatch.REPLACE);
+        assertThat(ops.get(0).path("path").asText()).isEqualTo("/interests");
+        assertThat(JsonPatch.apply(source, ops)).isEqualTo(target);
+    }
+
+    @Test
+    void randomEditsRoundTrip(){
+        Random random = new Random(42);
+        for (int run = 0; run < 2000; run++){
+            JsonNode source = randomResume(random);
+            JsonNode target = random.nextBoolean() ? mutate(source, random) : randomResume(random);
+            assertThat(JsonPatch.apply(source, JsonPatch.diff(source, target))).isEqualTo(target);
+        }
+    }
+
+    private JsonNode json(String text) throws Exception {
+        return objectMapper.readTree(text);
+    }
+
+//    every item differs between two offsets, so nothing can be trimmed from either end
+    private ObjectNode interests(int size, int offset){
+        ObjectNode resume = JsonNodeFactory.instance.objectNode();
+        ArrayNode interests = resume.putArray("interests");
+        for (int i = 0; i < size; i++){
+            interests.add("interest" + (i * 2 + offset));
+        }
+        return resume;
+    }
+
+    private JsonNode randomResume(Random random){
+        ObjectNode resume = JsonNodeFactory.instance.objectNode();
+        resume.put("title", "CV " + random.nextInt(3));
+        if (random.nextBoolean()){
+            resume.putObject("profileInfo").put("summary", "s" + random.nextInt(3));
+        }
+        ArrayNode skills = resume.putArray("skills");
+        for (int i = random.nextInt(6); i > 0; i--){
+            skills.add(skill(random));
+        }
+        return resume;
+    }
+
+    private JsonNode mutate(JsonNode source, Random random){
+        ObjectNode target = (ObjectNode) source.deepCopy();
+        ArrayNode skills = (ArrayNode) target.get("skills");
+        for (int edits = random.nextInt(4); edits > 0; edits--){
+            int choice = random.nextInt(3);
+            if (choice == 0 || skills.isEmpty()){
+                skills.insert(random.nextInt(skills.size() + 1), skill(random));
+            }else if (choice == 1){
+                skills.remove(random.nextInt(skills.size()));
+            }else {
+                ((ObjectNode) skills.get(random.nextInt(skills.size()))).put("level", random.nextInt(5));
+            }
+        }
+        return target;
+    }
+
+    private ObjectNode skill(Random random){
+        return JsonNodeFactory.instance.objectNode()
+                .put("name", "skill" + random.nextInt(8))
+                .put("level", random.nextInt(5));
+    }
+}